@@ -0,0 +1,294 @@
+package com.xrbpowered.doclet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class CommentParser {
+
+	// Splits raw comment text into body, block tags and inline tags following the javadoc 8 rules,
+	// so that both doclets produce the same comment tokens.
+
+	public static class Tag {
+		public final String name;
+		public final String text;
+
+		public Tag(String name, String text) {
+			this.name = name;
+			this.text = text;
+		}
+	}
+
+	public static class SeeRef {
+		public final String reference;
+		public final String label;
+
+		public SeeRef(String reference, String label) {
+			this.reference = reference;
+			this.label = label;
+		}
+	}
+
+	public static final String textTag = "Text";
+
+	private static final Pattern prePattern = Pattern.compile("(?i)<(/?)pre>");
+	private static final Pattern typeParamPattern = Pattern.compile("<([^<>]+)>");
+	private static final String[] sentenceTerminators = {
+		"<p>", "</p>", "<h1>", "<h2>", "<h3>", "<h4>", "<h5>", "<h6>",
+		"</h1>", "</h2>", "</h3>", "</h4>", "</h5>", "</h6>", "<hr>", "<pre>", "</pre>"
+	};
+
+	public final String raw;
+	public String body = "";
+	public final List<Tag> tags = new ArrayList<>();
+
+	public CommentParser(String raw) {
+		this.raw = raw;
+		parse();
+	}
+
+	private void parse() {
+		final int tagName = 0;
+		final int tagGap = 1;
+		final int inText = 2;
+
+		int state = tagGap;
+		boolean newLine = true;
+		String name = null;
+		int tagStart = 0;
+		int textStart = 0;
+		int lastNonWhite = -1;
+		int len = raw.length();
+		for(int i=0; i<len; i++) {
+			char ch = raw.charAt(i);
+			boolean isWhite = Character.isWhitespace(ch);
+			if(state==tagName) {
+				if(isWhite) {
+					name = raw.substring(tagStart, i);
+					state = tagGap;
+				}
+			}
+			else {
+				// the first non-white character after the tag name starts its text
+				if(state==tagGap && !isWhite) {
+					textStart = i;
+					state = inText;
+				}
+				if(state==inText && newLine && ch=='@') {
+					addComponent(name, textStart, lastNonWhite+1);
+					tagStart = i;
+					state = tagName;
+				}
+			}
+			if(ch=='\n')
+				newLine = true;
+			else if(!isWhite) {
+				lastNonWhite = i;
+				newLine = false;
+			}
+		}
+		if(state==tagName)
+			name = raw.substring(tagStart, len);
+		if(state!=inText)
+			textStart = len;
+		addComponent(name, textStart, lastNonWhite+1);
+	}
+
+	private void addComponent(String name, int from, int upto) {
+		String text = upto<=from ? "" : raw.substring(from, upto);
+		if(name==null)
+			body = text;
+		else
+			tags.add(new Tag(name, text));
+	}
+
+	public List<Tag> tags(String... names) {
+		List<Tag> res = new ArrayList<>();
+		for(Tag t : tags) {
+			for(String name : names) {
+				if(t.name.equals(name)) {
+					res.add(t);
+					break;
+				}
+			}
+		}
+		return res;
+	}
+
+	public static List<Tag> inlineTags(String text) {
+		List<Tag> res = new ArrayList<>();
+		int len = text.length();
+		if(len==0)
+			return res;
+		int textStart = 0;
+		boolean inPre = false;
+		while(true) {
+			int linkStart = inlineTagStart(text, textStart);
+			if(linkStart<0) {
+				res.add(new Tag(textTag, text.substring(textStart)));
+				break;
+			}
+			inPre = scanForPre(text, textStart, linkStart, inPre);
+			int seeTextStart = linkStart;
+			for(int i=linkStart; i<len; i++) {
+				char c = text.charAt(i);
+				if(Character.isWhitespace(c) || c=='}') {
+					seeTextStart = i;
+					break;
+				}
+			}
+			String linkName = text.substring(linkStart+2, seeTextStart);
+			if(!(inPre && (linkName.equals("code") || linkName.equals("literal")))) {
+				// skip white space after the tag name
+				while(seeTextStart<len && Character.isWhitespace(text.charAt(seeTextStart)))
+					seeTextStart++;
+				if(seeTextStart>=len) {
+					res.add(new Tag(textTag, text.substring(textStart, seeTextStart)));
+					return res;
+				}
+			}
+			res.add(new Tag(textTag, text.substring(textStart, linkStart)));
+			textStart = seeTextStart;
+			int delimEnd = inlineTagEnd(text, textStart);
+			if(delimEnd<0) {
+				// missing closing brace: keep the rest as text
+				res.add(new Tag(textTag, text.substring(textStart)));
+				return res;
+			}
+			res.add(new Tag("@"+linkName, text.substring(textStart, delimEnd)));
+			textStart = delimEnd+1;
+			if(textStart==len)
+				break;
+		}
+		return res;
+	}
+
+	private static int inlineTagStart(String text, int start) {
+		int linkStart = text.indexOf("{@", start);
+		if(start==text.length() || linkStart<0 || text.indexOf('}', linkStart)<0)
+			return -1;
+		else
+			return linkStart;
+	}
+
+	private static int inlineTagEnd(String text, int start) {
+		int delimEnd = text.indexOf('}', start);
+		if(delimEnd<0)
+			return -1;
+		int nestedOpen = text.indexOf('{', start);
+		if(nestedOpen>=0 && nestedOpen<delimEnd) {
+			int nestedClose = inlineTagEnd(text, nestedOpen+1);
+			return nestedClose<0 ? -1 : inlineTagEnd(text, nestedClose+1);
+		}
+		return delimEnd;
+	}
+
+	private static boolean scanForPre(String text, int start, int end, boolean inPre) {
+		Matcher m = prePattern.matcher(text).region(start, end);
+		while(m.find())
+			inPre = m.group(1).isEmpty();
+		return inPre;
+	}
+
+	public static String firstSentence(String s) {
+		if(s.isEmpty())
+			return "";
+		int index = s.indexOf("-->");
+		if(s.trim().startsWith("<!--") && index>=0)
+			return firstSentence(s.substring(index+3));
+		int len = s.length();
+		boolean period = false;
+		for(int i=0; i<len; i++) {
+			switch(s.charAt(i)) {
+				case '.':
+					period = true;
+					break;
+				case ' ':
+				case '\t':
+				case '\n':
+				case '\r':
+				case '\f':
+					if(period)
+						return s.substring(0, i).trim();
+					break;
+				case '<':
+					if(i>0 && isSentenceTerminator(s, i))
+						return s.substring(0, i).trim();
+					break;
+				default:
+					period = false;
+			}
+		}
+		return s.trim();
+	}
+
+	private static boolean isSentenceTerminator(String s, int index) {
+		for(String t : sentenceTerminators) {
+			if(s.regionMatches(true, index, t, 0, t.length()))
+				return true;
+		}
+		return false;
+	}
+
+	public static String[] divideAtWhite(String text) {
+		String[] res = {text, ""};
+		int len = text.length();
+		for(int i=0; i<len; i++) {
+			if(Character.isWhitespace(text.charAt(i))) {
+				res[0] = text.substring(0, i);
+				for(; i<len; i++) {
+					if(!Character.isWhitespace(text.charAt(i))) {
+						res[1] = text.substring(i);
+						break;
+					}
+				}
+				break;
+			}
+		}
+		return res;
+	}
+
+	public static String typeParamName(String name) {
+		Matcher m = typeParamPattern.matcher(name);
+		return m.matches() ? m.group(1) : null;
+	}
+
+	public static SeeRef parseSee(String text) {
+		int len = text.length();
+		if(len==0 || text.charAt(0)=='<' || text.charAt(0)=='"')
+			return new SeeRef(null, "");
+
+		// reference is the first word, parameter lists may contain spaces
+		int parens = 0;
+		int commentStart = 0;
+		for(int i=0; i<len; i++) {
+			char c = text.charAt(i);
+			if(c=='(')
+				parens++;
+			else if(c==')')
+				parens--;
+			else if(c==',' && parens<=0)
+				return new SeeRef(null, "");
+			else if((c==' ' || c=='\t' || c=='\n' || c=='\r') && parens==0) {
+				commentStart = i;
+				break;
+			}
+		}
+		if(parens!=0)
+			return new SeeRef(null, "");
+		if(commentStart==0)
+			return new SeeRef(text, "");
+		String label = "";
+		String labelText = text.substring(commentStart+1);
+		for(int i=0; i<labelText.length(); i++) {
+			char c = labelText.charAt(i);
+			if(!(c==' ' || c=='\t' || c=='\n')) {
+				label = labelText.substring(i);
+				break;
+			}
+		}
+		return new SeeRef(text.substring(0, commentStart), label);
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.xrbpowered.doclet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.lang.model.SourceVersion;
+
+import jdk.javadoc.doclet.DocletEnvironment;
+import jdk.javadoc.doclet.Reporter;
+
+public class ElementDoclet implements jdk.javadoc.doclet.Doclet {
+
+	// Entry point for the javadoc tool in JDK 9 and later, takes the same options as Doclet.
+
+	private static class Option implements jdk.javadoc.doclet.Doclet.Option {
+		private final String name;
+		private final String parameters;
+		private final String description;
+		private final List<String[]> values;
+
+		public Option(String name, String parameters, String description, List<String[]> values) {
+			this.name = name;
+			this.parameters = parameters;
+			this.description = description;
+			this.values = values;
+		}
+
+		@Override
+		public int getArgumentCount() {
+			return Options.optionLength(name)-1;
+		}
+
+		@Override
+		public String getDescription() {
+			return description;
+		}
+
+		@Override
+		public Kind getKind() {
+			return Kind.STANDARD;
+		}
+
+		@Override
+		public List<String> getNames() {
+			return Arrays.asList(name);
+		}
+
+		@Override
+		public String getParameters() {
+			return parameters;
+		}
+
+		@Override
+		public boolean process(String option, List<String> arguments) {
+			String[] opt = new String[arguments.size()+1];
+			opt[0] = name;
+			for(int i=0; i<arguments.size(); i++)
+				opt[i+1] = arguments.get(i);
+			values.add(opt);
+			return true;
+		}
+	}
+
+	private final List<String[]> optionValues = new ArrayList<>();
+
+	@Override
+	public void init(Locale locale, Reporter reporter) {
+		// messages go through Doclet.printNotice and Doclet.printWarning
+	}
+
+	@Override
+	public String getName() {
+		return "XRBDoclet";
+	}
+
+	@Override
+	public Set<? extends Option> getSupportedOptions() {
+		Set<Option> options = new LinkedHashSet<>();
+		options.add(new Option("-d", "<fullpath>", "Output path", optionValues));
+		options.add(new Option("-doctitle", "<string>", "Title for the generated files", optionValues));
+		options.add(new Option("-css", "<fullpath>", "Path to custom CSS", optionValues));
+		options.add(new Option("-js", "<fullpath>", "Path to custom Javascript", optionValues));
+		options.add(new Option("-overview", "<packagename>", "Overview page package", optionValues));
+		options.add(new Option("-date", "", "Print current date on every page", optionValues));
+		options.add(new Option("-compact", "", "Minify the generated HTML", optionValues));
+		options.add(new Option("-hashassets", "", "Name style files by content hash for long-lived caching", optionValues));
+		options.add(new Option("-extfragments", "", "Load members inherited from external classes from shared files", optionValues));
+		options.add(new Option("-threads", "<n>", "Render pages using n threads", optionValues));
+		options.add(new Option("-shardindex", "<n>", "Split the class index into pages of at most n classes", optionValues));
+		options.add(new Option("-gzip", "<minsize>", "Also write .gz files of at least minsize bytes", optionValues));
+		options.add(new Option("-incremental", "", "Only regenerate changed pages", optionValues));
+		options.add(new Option("-dedup", "", "Store identical doc-files only once", optionValues));
+		options.add(new Option("-savemodel", "", "Save the documentation model", optionValues));
+		options.add(new Option("-model", "<fullpath>", "Model file location", optionValues));
+		options.add(new Option("-stats", "<file>", "Write generation statistics as JSON", optionValues));
+		return options;
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latest();
+	}
+
+	@Override
+	public boolean run(DocletEnvironment env) {
+		Stats.Timer t = Stats.start();
+		Options.loadOptions(optionValues.toArray(new String[optionValues.size()][]));
+		Stats.stop(t, Stats.options);
+		Doclet.printNotice("Using XRB powered custom doclet.");
+		FileUtils.createRoot();
+		FileUtils.startCopying();
+		FileUtils.copyStyleFiles();
+
+		t = Stats.start();
+		DocModel model = ElementModelBuilder.build(env);
+		Stats.stop(t, Stats.model);
+		if(Options.saveModel) {
+			Doclet.printNotice("... Saving documentation model");
+			t = Stats.start();
+			ModelFile.save(model, ModelFile.getFile());
+			Stats.stop(t, Stats.saveModel);
+		}
+		Doclet.render(model);
+		return true;
+	}
+
+}
@@ -0,0 +1,1032 @@
+package com.xrbpowered.doclet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.IntersectionType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+
+import com.sun.source.doctree.DocCommentTree;
+import com.sun.source.doctree.ReferenceTree;
+import com.sun.source.util.DocTreePath;
+import com.sun.source.util.DocTreePathScanner;
+import com.sun.source.util.DocTrees;
+import com.sun.source.util.TreePath;
+import com.xrbpowered.doclet.CommentModel.ParamComment;
+import com.xrbpowered.doclet.CommentModel.ThrowsComment;
+import com.xrbpowered.doclet.CommentModel.Token;
+import com.xrbpowered.doclet.CommentParser.SeeRef;
+import com.xrbpowered.doclet.CommentParser.Tag;
+
+import jdk.javadoc.doclet.DocletEnvironment;
+
+public class ElementModelBuilder {
+
+	// Same model as ModelBuilder, built from the javax.lang.model view of the sources.
+	// Elements are visited on demand: only the listed classes, their supertypes and the members
+	// shown on their pages are expanded, and doc comment trees are only parsed for comments
+	// that end up on a page.
+
+	private static final Pattern bodyPattern = Pattern.compile("(?is).*<body\\b[^>]*>(.*)</body\\b.*");
+
+	private final DocletEnvironment env;
+	private final Elements elementUtils;
+	private final DocTrees trees;
+	private final HashMap<Element, ElementModel> records = new HashMap<>();
+	private final HashSet<Element> listedElements = new HashSet<>();
+	private final HashMap<String, TypeModel> types = new HashMap<>();
+	private final ArrayList<ElementModel> elements = new ArrayList<>();
+
+	private final LinkedHashSet<TypeElement> detailedElements = new LinkedHashSet<>();
+	private final HashMap<TypeElement, InheritedMembers> memberTables = new HashMap<>();
+
+	private Element commentHolder = null;
+	private Map<String, Element> commentRefs = null;
+
+	private static class InheritedMembers {
+		public final List<ExecutableElement> methods = new ArrayList<>();
+		public final List<VariableElement> fields = new ArrayList<>();
+		public final Map<ExecutableElement, ExecutableElement> overrides = new HashMap<>();
+	}
+
+	public ElementModelBuilder(DocletEnvironment env) {
+		this.env = env;
+		this.elementUtils = env.getElementUtils();
+		this.trees = env.getDocTrees();
+	}
+
+	public DocModel build() {
+		List<PackageElement> specified = new ArrayList<>(ElementFilter.packagesIn(env.getSpecifiedElements()));
+		List<TypeElement> included = includedClasses(specified);
+		for(PackageElement pkg : specified) {
+			if(!Options.isOverview(pkg.getQualifiedName().toString()))
+				listedElements.add(pkg);
+		}
+		listedElements.addAll(included);
+
+		ArrayList<PackageModel> packages = new ArrayList<>();
+		PackageModel overview = null;
+		for(PackageElement pkg : specified) {
+			PackageModel p = packageModel(pkg);
+			packages.add(p);
+			if(!p.listed)
+				overview = p;
+		}
+		ArrayList<ClassModel> classes = new ArrayList<>();
+		for(TypeElement cls : included)
+			classes.add(classModel(cls));
+
+		for(TypeElement cls : included) {
+			addDetailed(cls);
+			for(TypeElement c : innerClasses(cls))
+				addDetailed(c);
+		}
+		// supertypes are appended while iterating
+		ArrayList<TypeElement> detailedList = new ArrayList<>(detailedElements);
+		for(int i=0; i<detailedList.size(); i++) {
+			TypeElement cls = detailedList.get(i);
+			fillDetails(cls);
+			for(TypeElement sup : supertypes(cls)) {
+				if(detailedElements.add(sup))
+					detailedList.add(sup);
+			}
+		}
+
+		for(TypeElement cls : included)
+			fillMemberTable(cls);
+		for(PackageElement pkg : specified)
+			fillPackage(pkg);
+
+		return new DocModel(elements, packages, classes, overview);
+	}
+
+	private List<TypeElement> includedClasses(List<PackageElement> specified) {
+		ArrayList<TypeElement> list = new ArrayList<>();
+		for(PackageElement pkg : specified) {
+			for(TypeElement cls : ElementFilter.typesIn(pkg.getEnclosedElements()))
+				addIncluded(cls, list);
+		}
+		for(TypeElement cls : ElementFilter.typesIn(env.getSpecifiedElements())) {
+			if(!list.contains(cls))
+				addIncluded(cls, list);
+		}
+		return list;
+	}
+
+	private void addIncluded(TypeElement cls, List<TypeElement> list) {
+		if(!env.isIncluded(cls))
+			return;
+		list.add(cls);
+		for(TypeElement c : ElementFilter.typesIn(cls.getEnclosedElements()))
+			addIncluded(c, list);
+	}
+
+	private <T extends ElementModel> T register(Element e, T rec) {
+		records.put(e, rec);
+		elements.add(rec);
+		return rec;
+	}
+
+	private void addDetailed(TypeElement cls) {
+		detailedElements.add(cls);
+	}
+
+	private List<TypeElement> supertypes(TypeElement cls) {
+		ArrayList<TypeElement> list = new ArrayList<>();
+		TypeElement sup = superclass(cls);
+		if(sup!=null)
+			list.add(sup);
+		for(TypeMirror t : cls.getInterfaces())
+			list.add(asClass(t));
+		return list;
+	}
+
+	private static TypeElement asClass(TypeMirror t) {
+		return (TypeElement) ((DeclaredType) t).asElement();
+	}
+
+	private static TypeElement superclass(TypeElement cls) {
+		TypeMirror sup = cls.getSuperclass();
+		return sup.getKind()==TypeKind.DECLARED ? asClass(sup) : null;
+	}
+
+	private static String packageName(Element e) {
+		while(e.getKind()!=ElementKind.PACKAGE)
+			e = e.getEnclosingElement();
+		return ((PackageElement) e).getQualifiedName().toString();
+	}
+
+	private static boolean isClass(Element e) {
+		return e.getKind().isClass() || e.getKind().isInterface();
+	}
+
+	private static TypeElement containingClass(Element e) {
+		Element encl = e.getEnclosingElement();
+		return encl!=null && isClass(encl) ? (TypeElement) encl : null;
+	}
+
+	private static String className(TypeElement cls, boolean full) {
+		if(full)
+			return cls.getQualifiedName().toString();
+		String name = cls.getSimpleName().toString();
+		for(TypeElement c = containingClass(cls); c!=null; c = containingClass(c))
+			name = c.getSimpleName()+"."+name;
+		return name;
+	}
+
+	private boolean isShown(Element e) {
+		TypeElement cls = containingClass(e);
+		if(env.isIncluded(cls==null ? e : cls))
+			return env.isIncluded(e);
+		// javadoc 8 also listed public and protected members of external classes
+		Set<Modifier> mods = e.getModifiers();
+		return mods.contains(Modifier.PUBLIC) || mods.contains(Modifier.PROTECTED);
+	}
+
+	private boolean isVisible(TypeElement cls) {
+		TypeElement outer = containingClass(cls);
+		return isShown(cls) && (outer==null || isVisible(outer));
+	}
+
+	public PackageModel packageModel(PackageElement pkg) {
+		PackageModel p = (PackageModel) records.get(pkg);
+		if(p==null)
+			p = register(pkg, new PackageModel(elements.size(), pkg.getQualifiedName().toString(), listedElements.contains(pkg)));
+		return p;
+	}
+
+	private void fillPackage(PackageElement pkg) {
+		PackageModel p = packageModel(pkg);
+		// package must contain package-info.java or package.html in order to have doc-files
+		File dir = null;
+		String raw = elementUtils.getDocComment(pkg);
+		TreePath path = trees.getPath(pkg);
+		if(path!=null) {
+			dir = sourceFile(path).getParentFile();
+		}
+		else {
+			File html = packageHtml(pkg);
+			if(html!=null) {
+				dir = html.getParentFile();
+				raw = readPackageHtml(html);
+			}
+		}
+		if(dir!=null)
+			p.setDocFilesPath(new File(dir, "doc-files").getAbsolutePath());
+		p.setComment(comment(pkg, raw));
+
+		ArrayList<ClassModel> interfaces = new ArrayList<>();
+		ArrayList<ClassModel> enums = new ArrayList<>();
+		ArrayList<ClassModel> ordinaryClasses = new ArrayList<>();
+		ArrayList<ClassModel> exceptions = new ArrayList<>();
+		ArrayList<ClassModel> errors = new ArrayList<>();
+		ArrayList<ClassModel> annotationTypes = new ArrayList<>();
+		ArrayList<TypeElement> all = new ArrayList<>();
+		for(TypeElement cls : ElementFilter.typesIn(pkg.getEnclosedElements()))
+			addIncluded(cls, all);
+		TypeMirror error = elementUtils.getTypeElement("java.lang.Error").asType();
+		TypeMirror exception = elementUtils.getTypeElement("java.lang.Exception").asType();
+		for(TypeElement cls : all) {
+			ClassModel c = classModel(cls);
+			switch(cls.getKind()) {
+				case INTERFACE:
+					interfaces.add(c);
+					break;
+				case ENUM:
+					enums.add(c);
+					break;
+				case ANNOTATION_TYPE:
+					annotationTypes.add(c);
+					break;
+				default:
+					if(env.getTypeUtils().isSubtype(cls.asType(), error))
+						errors.add(c);
+					else if(env.getTypeUtils().isSubtype(cls.asType(), exception))
+						exceptions.add(c);
+					else
+						ordinaryClasses.add(c);
+			}
+		}
+		p.setClasses(interfaces.toArray(ClassModel.none), enums.toArray(ClassModel.none), ordinaryClasses.toArray(ClassModel.none),
+				exceptions.toArray(ClassModel.none), errors.toArray(ClassModel.none), annotationTypes.toArray(ClassModel.none));
+	}
+
+	private static File sourceFile(TreePath path) {
+		return new File(path.getCompilationUnit().getSourceFile().toUri());
+	}
+
+	private File packageHtml(PackageElement pkg) {
+		for(TypeElement cls : ElementFilter.typesIn(pkg.getEnclosedElements())) {
+			TreePath path = trees.getPath(cls);
+			if(path!=null) {
+				File html = new File(sourceFile(path).getParentFile(), "package.html");
+				return html.exists() ? html : null;
+			}
+		}
+		return null;
+	}
+
+	private String readPackageHtml(File html) {
+		try {
+			String text;
+			JavaFileManager fm = env.getJavaFileManager();
+			if(fm instanceof StandardJavaFileManager) {
+				// decode using the -encoding given to javadoc
+				JavaFileObject file = ((StandardJavaFileManager) fm).getJavaFileObjects(html).iterator().next();
+				text = file.getCharContent(true).toString();
+			}
+			else
+				text = new String(Files.readAllBytes(html.toPath()), Charset.defaultCharset());
+			Matcher m = bodyPattern.matcher(text);
+			if(m.matches())
+				return m.group(1);
+			Doclet.printWarning("No <body> found in "+html.getPath());
+			return "";
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public ClassModel classModel(TypeElement cls) {
+		ClassModel c = (ClassModel) records.get(cls);
+		if(c==null) {
+			ElementKind kind = cls.getKind();
+			c = register(cls, new ClassModel(elements.size(), className(cls, false), listedElements.contains(cls),
+					cls.getQualifiedName().toString(), cls.getSimpleName().toString(), packageName(cls),
+					kind==ElementKind.INTERFACE, kind==ElementKind.ANNOTATION_TYPE, kind==ElementKind.ENUM));
+			fillElement(c, cls);
+			TypeElement outer = containingClass(cls);
+			c.setDeclaration(outer!=null ? classModel(outer) : null, typeParams(cls.getTypeParameters()));
+		}
+		return c;
+	}
+
+	private ClassModel[] classModels(List<TypeElement> list) {
+		ClassModel[] res = new ClassModel[list.size()];
+		for(int i=0; i<res.length; i++)
+			res[i] = classModel(list.get(i));
+		return res;
+	}
+
+	private List<TypeElement> innerClasses(TypeElement cls) {
+		ArrayList<TypeElement> list = new ArrayList<>();
+		for(TypeElement c : ElementFilter.typesIn(cls.getEnclosedElements())) {
+			if(isVisible(c))
+				list.add(c);
+		}
+		return list;
+	}
+
+	private List<VariableElement> fields(TypeElement cls, boolean enumConstants) {
+		ArrayList<VariableElement> list = new ArrayList<>();
+		for(Element e : cls.getEnclosedElements()) {
+			if(enumConstants ? e.getKind()==ElementKind.ENUM_CONSTANT : e.getKind()==ElementKind.FIELD && isShown(e))
+				list.add((VariableElement) e);
+		}
+		return list;
+	}
+
+	private List<ExecutableElement> executables(TypeElement cls, ElementKind kind) {
+		ArrayList<ExecutableElement> list = new ArrayList<>();
+		// javadoc 8 listed annotation type elements separately from methods
+		if(kind==ElementKind.METHOD && cls.getKind()==ElementKind.ANNOTATION_TYPE)
+			return list;
+		for(Element e : cls.getEnclosedElements()) {
+			if(e.getKind()==kind && isShown(e))
+				list.add((ExecutableElement) e);
+		}
+		return list;
+	}
+
+	private void fillDetails(TypeElement cls) {
+		ClassModel c = classModel(cls);
+		c.setComment(comment(cls));
+		TypeElement sup = superclass(cls);
+		ClassModel superclass = null;
+		TypeModel superclassType = null;
+		if(sup!=null) {
+			superclass = classModel(sup);
+			superclassType = type(cls.getSuperclass());
+		}
+		ArrayList<TypeElement> interfaces = new ArrayList<>();
+		for(TypeMirror t : cls.getInterfaces())
+			interfaces.add(asClass(t));
+		c.setDetails(superclass, superclassType, classModels(interfaces), types(cls.getInterfaces()),
+				classModels(innerClasses(cls)), fieldModels(fields(cls, true), true), fieldModels(fields(cls, false), true),
+				methodModels(executables(cls, ElementKind.CONSTRUCTOR), true), methodModels(executables(cls, ElementKind.METHOD), true));
+	}
+
+	private void fillMemberTable(TypeElement cls) {
+		ClassModel c = classModel(cls);
+		InheritedMembers table = memberTable(cls);
+		c.setAllMembers(fieldModels(table.fields, false), methodModels(table.methods, false));
+		for(Map.Entry<ExecutableElement, ExecutableElement> e : table.overrides.entrySet())
+			((MethodModel) memberModel(e.getKey())).setOverridden((MethodModel) memberModel(e.getValue()));
+	}
+
+	private InheritedMembers memberTable(TypeElement cls) {
+		// same rules as MemberTable
+		InheritedMembers table = memberTables.get(cls);
+		if(table!=null)
+			return table;
+		table = new InheritedMembers();
+		HashMap<String, List<ExecutableElement>> methodKeys = new HashMap<>();
+		for(ExecutableElement m : executables(cls, ElementKind.METHOD))
+			addMethod(m, table.methods, methodKeys);
+		for(TypeElement sup : supertypes(cls))
+			inheritMethods(cls, memberTable(sup), table, methodKeys);
+
+		HashSet<String> hideMask = new HashSet<>();
+		for(VariableElement f : fields(cls, false)) {
+			table.fields.add(f);
+			hideMask.add(f.getSimpleName().toString());
+		}
+		for(TypeElement sup : supertypes(cls)) {
+			for(VariableElement f : memberTable(sup).fields) {
+				if(hideMask.add(f.getSimpleName().toString()))
+					table.fields.add(f);
+			}
+		}
+		memberTables.put(cls, table);
+		return table;
+	}
+
+	private static String methodKey(ExecutableElement m) {
+		return m.getSimpleName()+"/"+m.getParameters().size();
+	}
+
+	private static void addMethod(ExecutableElement m, List<ExecutableElement> methods, HashMap<String, List<ExecutableElement>> methodKeys) {
+		methods.add(m);
+		String key = methodKey(m);
+		List<ExecutableElement> list = methodKeys.get(key);
+		if(list==null) {
+			list = new ArrayList<>(1);
+			methodKeys.put(key, list);
+		}
+		list.add(m);
+	}
+
+	private void inheritMethods(TypeElement cls, InheritedMembers sup, InheritedMembers table, HashMap<String, List<ExecutableElement>> methodKeys) {
+		for(ExecutableElement cm : sup.methods) {
+			ExecutableElement overriding = null;
+			List<ExecutableElement> candidates = methodKeys.get(methodKey(cm));
+			if(candidates!=null) {
+				for(ExecutableElement m : candidates) {
+					if(elementUtils.overrides(m, cm, (TypeElement) m.getEnclosingElement())) {
+						overriding = m;
+						break;
+					}
+				}
+			}
+			if(overriding==null)
+				addMethod(cm, table.methods, methodKeys);
+			else if(overriding.getEnclosingElement()==cls && !table.overrides.containsKey(overriding))
+				table.overrides.put(overriding, cm);
+		}
+	}
+
+	private FieldModel[] fieldModels(List<VariableElement> list, boolean withComments) {
+		FieldModel[] res = new FieldModel[list.size()];
+		for(int i=0; i<res.length; i++) {
+			res[i] = (FieldModel) memberModel(list.get(i));
+			if(withComments)
+				res[i].setComment(comment(list.get(i)));
+		}
+		return res;
+	}
+
+	private MethodModel[] methodModels(List<ExecutableElement> list, boolean withComments) {
+		MethodModel[] res = new MethodModel[list.size()];
+		for(int i=0; i<res.length; i++) {
+			res[i] = (MethodModel) memberModel(list.get(i));
+			if(withComments)
+				res[i].setComment(comment(list.get(i)));
+		}
+		return res;
+	}
+
+	public MemberModel memberModel(Element mem) {
+		MemberModel m = (MemberModel) records.get(mem);
+		if(m!=null)
+			return m;
+		TypeElement owner = (TypeElement) mem.getEnclosingElement();
+		ClassModel cls = classModel(owner);
+		String qualifiedName = owner.getQualifiedName().toString();
+		if(mem instanceof VariableElement) {
+			VariableElement fld = (VariableElement) mem;
+			String name = fld.getSimpleName().toString();
+			FieldModel f = register(fld, new FieldModel(elements.size(), name, qualifiedName+"."+name, cls,
+					fld.getKind()==ElementKind.ENUM_CONSTANT));
+			fillElement(f, fld);
+			f.setType(type(fld.asType()), constantValueExpression(fld));
+			return f;
+		}
+		else {
+			ExecutableElement met = (ExecutableElement) mem;
+			boolean constructor = met.getKind()==ElementKind.CONSTRUCTOR;
+			String name = constructor ? owner.getSimpleName().toString() : met.getSimpleName().toString();
+			MethodModel mm = register(met, new MethodModel(elements.size(), name, constructor ? qualifiedName : qualifiedName+"."+name,
+					cls, constructor, met.getKind()==ElementKind.METHOD));
+			fillElement(mm, met);
+			boolean defaultConstructor = constructor && (elementUtils.getOrigin(met)==Elements.Origin.MANDATED || trees.getPath(met)==null);
+			TypeModel[] typeParameters = typeParams(met.getTypeParameters());
+			boolean isAbstract = false;
+			TypeModel returnType = null;
+			if(!constructor) {
+				isAbstract = met.getModifiers().contains(Modifier.ABSTRACT);
+				returnType = type(met.getReturnType());
+			}
+			List<? extends VariableElement> params = met.getParameters();
+			String[] paramNames = new String[params.size()];
+			TypeModel[] paramTypes = new TypeModel[params.size()];
+			for(int i=0; i<params.size(); i++) {
+				paramNames[i] = params.get(i).getSimpleName().toString();
+				paramTypes[i] = type(params.get(i).asType());
+			}
+			mm.setDeclaration(met.isVarArgs(), isAbstract, defaultConstructor, typeParameters, returnType,
+					paramNames, paramTypes, types(met.getThrownTypes()));
+			String signature = signature(met, true);
+			mm.setSignature(methodAnchor(met), signature, signature(met, false), mm.qualifiedName+signature);
+			return mm;
+		}
+	}
+
+	private void fillElement(ElementModel e, Element elem) {
+		List<? extends AnnotationMirror> anns = elem.getAnnotationMirrors();
+		AnnotationModel[] annotations = AnnotationModel.none;
+		if(anns.size()>0) {
+			annotations = new AnnotationModel[anns.size()];
+			for(int i=0; i<anns.size(); i++)
+				annotations[i] = annotation(anns.get(i));
+		}
+		int modifierSpecifier = modifierSpecifier(elem);
+		e.setModifiers(modifierSpecifier, java.lang.reflect.Modifier.toString(modifierSpecifier), isDeprecated(elem), annotations);
+	}
+
+	public static int modifierSpecifier(Element e) {
+		int mods = 0;
+		for(Modifier m : e.getModifiers()) {
+			switch(m) {
+				case PUBLIC: mods |= java.lang.reflect.Modifier.PUBLIC; break;
+				case PROTECTED: mods |= java.lang.reflect.Modifier.PROTECTED; break;
+				case PRIVATE: mods |= java.lang.reflect.Modifier.PRIVATE; break;
+				case ABSTRACT: mods |= java.lang.reflect.Modifier.ABSTRACT; break;
+				case STATIC: mods |= java.lang.reflect.Modifier.STATIC; break;
+				case FINAL: mods |= java.lang.reflect.Modifier.FINAL; break;
+				case TRANSIENT: mods |= java.lang.reflect.Modifier.TRANSIENT; break;
+				case VOLATILE: mods |= java.lang.reflect.Modifier.VOLATILE; break;
+				case SYNCHRONIZED: mods |= java.lang.reflect.Modifier.SYNCHRONIZED; break;
+				case NATIVE: mods |= java.lang.reflect.Modifier.NATIVE; break;
+				case STRICTFP: mods |= java.lang.reflect.Modifier.STRICT; break;
+				default: break;
+			}
+		}
+		// remove the implicit abstract modifier from interfaces and their methods
+		ElementKind kind = e.getKind();
+		if(kind.isInterface())
+			mods = (mods | java.lang.reflect.Modifier.INTERFACE) & ~java.lang.reflect.Modifier.ABSTRACT;
+		else if(kind==ElementKind.METHOD && e.getEnclosingElement().getKind().isInterface())
+			mods &= ~java.lang.reflect.Modifier.ABSTRACT;
+		return mods;
+	}
+
+	private boolean isDeprecated(Element e) {
+		for(AnnotationMirror ann : e.getAnnotationMirrors()) {
+			if(((TypeElement) ann.getAnnotationType().asElement()).getQualifiedName().contentEquals("java.lang.Deprecated"))
+				return true;
+		}
+		String raw = elementUtils.getDocComment(e);
+		return raw!=null && !new CommentParser(raw).tags("@deprecated").isEmpty();
+	}
+
+	public static String methodAnchor(ExecutableElement met) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(met.getKind()==ElementKind.CONSTRUCTOR ? met.getEnclosingElement().getSimpleName() : met.getSimpleName());
+		List<? extends VariableElement> params = met.getParameters();
+		for(int i=0; i<params.size(); i++) {
+			sb.append("-");
+			TypeMirror type = params.get(i).asType();
+			int dims = 0;
+			while(type.getKind()==TypeKind.ARRAY) {
+				type = ((ArrayType) type).getComponentType();
+				dims++;
+			}
+			if(type.getKind().isPrimitive())
+				sb.append(type.toString());
+			else
+				sb.append(erasureName(type));
+			if(met.isVarArgs() && i==params.size()-1 && dims>0)
+				sb.append("...");
+			else {
+				for(int d=0; d<dims; d++)
+					sb.append(":A");
+			}
+		}
+		sb.append("-");
+		return sb.toString();
+	}
+
+	private static String erasureName(TypeMirror type) {
+		switch(type.getKind()) {
+			case DECLARED:
+				return asClass(type).getQualifiedName().toString();
+			case TYPEVAR:
+				return erasureName(((TypeVariable) type).getUpperBound());
+			case INTERSECTION:
+				return erasureName(((IntersectionType) type).getBounds().get(0));
+			default:
+				return type.toString();
+		}
+	}
+
+	private static String signature(ExecutableElement met, boolean full) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("(");
+		List<? extends VariableElement> params = met.getParameters();
+		for(int i=0; i<params.size(); i++) {
+			if(i>0) sb.append(", ");
+			sb.append(typeString(params.get(i).asType(), full));
+		}
+		if(met.isVarArgs()) {
+			int len = sb.length();
+			sb.replace(len-2, len, "...");
+		}
+		sb.append(")");
+		return sb.toString();
+	}
+
+	private static String typeString(TypeMirror t, boolean full) {
+		switch(t.getKind()) {
+			case ARRAY: {
+				StringBuilder sb = new StringBuilder();
+				while(t.getKind()==TypeKind.ARRAY) {
+					sb.append("[]");
+					t = ((ArrayType) t).getComponentType();
+				}
+				sb.insert(0, typeString(t, full));
+				return sb.toString();
+			}
+			case DECLARED: {
+				DeclaredType dt = (DeclaredType) t;
+				StringBuilder sb = new StringBuilder();
+				TypeMirror encl = dt.getEnclosingType();
+				if(encl.getKind()==TypeKind.DECLARED)
+					sb.append(typeString(encl, full)).append('.').append(dt.asElement().getSimpleName());
+				else
+					sb.append(className(asClass(dt), full));
+				List<? extends TypeMirror> args = dt.getTypeArguments();
+				for(int i=0; i<args.size(); i++) {
+					sb.append(i==0 ? "<" : ", ");
+					sb.append(typeString(args.get(i), full));
+				}
+				if(args.size()>0)
+					sb.append(">");
+				return sb.toString();
+			}
+			case WILDCARD: {
+				WildcardType wt = (WildcardType) t;
+				if(wt.getExtendsBound()!=null)
+					return "? extends "+typeString(wt.getExtendsBound(), full);
+				else if(wt.getSuperBound()!=null)
+					return "? super "+typeString(wt.getSuperBound(), full);
+				else
+					return "?";
+			}
+			case TYPEVAR:
+				return ((TypeVariable) t).asElement().getSimpleName().toString();
+			default:
+				return t.toString();
+		}
+	}
+
+	private static List<? extends TypeMirror> bounds(TypeVariable tv) {
+		TypeMirror upper = tv.getUpperBound();
+		if(upper.getKind()==TypeKind.INTERSECTION)
+			return ((IntersectionType) upper).getBounds();
+		else if(upper.getKind()==TypeKind.DECLARED && asClass(upper).getQualifiedName().contentEquals("java.lang.Object"))
+			return Collections.emptyList();
+		else
+			return Collections.singletonList(upper);
+	}
+
+	private static String typeVarString(TypeVariable tv) {
+		StringBuilder sb = new StringBuilder(tv.asElement().getSimpleName());
+		boolean first = true;
+		for(TypeMirror b : bounds(tv)) {
+			sb.append(first ? " extends " : " & ");
+			sb.append(typeString(b, true));
+			first = false;
+		}
+		return sb.toString();
+	}
+
+	private static String constantValueExpression(VariableElement fld) {
+		// javadoc 8 source form of constants
+		Object value = fld.getConstantValue();
+		if(value==null)
+			return null;
+		if(value instanceof Character)
+			return Integer.toString((Character) value); // javadoc 8 sees char, byte and short constants as int
+		if(value instanceof String)
+			return "\""+sourceChars((String) value)+"\"";
+		if(value instanceof Double)
+			return sourceForm((Double) value, 'd');
+		if(value instanceof Float)
+			return sourceForm(((Float) value).doubleValue(), 'f');
+		if(value instanceof Long)
+			return value+"L";
+		return value.toString();
+	}
+
+	private static String sourceForm(double v, char suffix) {
+		if(Double.isNaN(v))
+			return "0"+suffix+"/0"+suffix;
+		if(v==Double.POSITIVE_INFINITY)
+			return "1"+suffix+"/0"+suffix;
+		if(v==Double.NEGATIVE_INFINITY)
+			return "-1"+suffix+"/0"+suffix;
+		return v+(suffix=='f' ? "f" : "");
+	}
+
+	private static String sourceChars(String s) {
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<s.length(); i++) {
+			char c = s.charAt(i);
+			switch(c) {
+				case '\b': sb.append("\\b"); break;
+				case '\t': sb.append("\\t"); break;
+				case '\n': sb.append("\\n"); break;
+				case '\f': sb.append("\\f"); break;
+				case '\r': sb.append("\\r"); break;
+				case '\"': sb.append("\\\""); break;
+				case '\'': sb.append("\\\'"); break;
+				case '\\': sb.append("\\\\"); break;
+				default:
+					if(c>=' ' && c<='~')
+						sb.append(c);
+					else
+						sb.append(String.format("\\u%04x", (int) c));
+			}
+		}
+		return sb.toString();
+	}
+
+	private AnnotationModel annotation(AnnotationMirror ann) {
+		Map<? extends ExecutableElement, ? extends AnnotationValue> pairs = ann.getElementValues();
+		String[] names = new String[pairs.size()];
+		AnnotationModel.Value[] values = new AnnotationModel.Value[pairs.size()];
+		int i = 0;
+		for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : pairs.entrySet()) {
+			names[i] = e.getKey().getSimpleName().toString();
+			values[i] = annotationValue(e.getValue());
+			i++;
+		}
+		return new AnnotationModel(ann.toString(), type(ann.getAnnotationType()), names, values);
+	}
+
+	private AnnotationModel.Value annotationValue(AnnotationValue v) {
+		Object obj = v.getValue();
+		if(obj instanceof TypeMirror)
+			return new AnnotationModel.Value(AnnotationModel.Value.TYPE, null, type((TypeMirror) obj), null, null);
+		else if(obj instanceof VariableElement)
+			return new AnnotationModel.Value(AnnotationModel.Value.FIELD, null, null, (FieldModel) memberModel((VariableElement) obj), null);
+		else if(obj instanceof AnnotationMirror)
+			return new AnnotationModel.Value(AnnotationModel.Value.ANNOTATION, null, type(((AnnotationMirror) obj).getAnnotationType()), null, null);
+		else if(obj instanceof List<?>) {
+			List<?> vals = (List<?>) obj;
+			AnnotationModel.Value[] res = new AnnotationModel.Value[vals.size()];
+			for(int i=0; i<res.length; i++)
+				res[i] = annotationValue((AnnotationValue) vals.get(i));
+			return new AnnotationModel.Value(AnnotationModel.Value.ARRAY, null, null, null, res);
+		}
+		else
+			return new AnnotationModel.Value(AnnotationModel.Value.CONSTANT, obj.toString(), null, null, null);
+	}
+
+	private TypeModel type(TypeMirror type) {
+		return type(type, false);
+	}
+
+	private TypeModel[] types(List<? extends TypeMirror> list) {
+		if(list==null || list.isEmpty())
+			return TypeModel.none;
+		TypeModel[] res = new TypeModel[list.size()];
+		for(int i=0; i<res.length; i++)
+			res[i] = type(list.get(i), false);
+		return res;
+	}
+
+	private TypeModel[] typeParams(List<? extends TypeParameterElement> list) {
+		if(list.isEmpty())
+			return TypeModel.none;
+		TypeModel[] res = new TypeModel[list.size()];
+		for(int i=0; i<res.length; i++)
+			res[i] = type(list.get(i).asType(), true);
+		return res;
+	}
+
+	private TypeModel classType(TypeElement cls) {
+		// raw class reference, e.g. from a @throws tag
+		String key = cls.getQualifiedName().toString();
+		TypeModel t = types.get(key);
+		if(t==null) {
+			t = new TypeModel(key, TypeModel.CLASS, cls.getSimpleName().toString(), classModel(cls), TypeModel.none, TypeModel.none, TypeModel.none, "");
+			types.put(key, t);
+		}
+		return t;
+	}
+
+	private TypeModel type(TypeMirror type, boolean withBounds) {
+		if(type==null || type.getKind()==TypeKind.NONE)
+			return null;
+		// keys follow the javadoc 8 type strings, type variables include their bounds
+		String key;
+		List<? extends TypeMirror> bounds = null;
+		if(type.getKind()==TypeKind.TYPEVAR) {
+			TypeVariable tv = (TypeVariable) type;
+			key = typeVarString(tv);
+			if(withBounds) {
+				// bounds are only shown in type parameter declarations
+				bounds = bounds(tv);
+				StringBuilder sb = new StringBuilder(key);
+				for(TypeMirror b : bounds)
+					sb.append('&').append(typeVarKey(b));
+				key = sb.toString();
+			}
+		}
+		else
+			key = typeVarKey(type);
+		TypeModel t = types.get(key);
+		if(t!=null)
+			return t;
+
+		TypeMirror comp = type;
+		StringBuilder dims = new StringBuilder();
+		while(comp.getKind()==TypeKind.ARRAY) {
+			comp = ((ArrayType) comp).getComponentType();
+			dims.append("[]");
+		}
+		switch(comp.getKind()) {
+			case WILDCARD: {
+				WildcardType wt = (WildcardType) comp;
+				t = new TypeModel(key, TypeModel.WILDCARD, "?", null, TypeModel.none,
+						wt.getExtendsBound()==null ? TypeModel.none : types(Collections.singletonList(wt.getExtendsBound())),
+						wt.getSuperBound()==null ? TypeModel.none : types(Collections.singletonList(wt.getSuperBound())), "");
+				break;
+			}
+			case TYPEVAR:
+				// javadoc 8 treats arrays of type variables as the type variable itself
+				t = new TypeModel(key, TypeModel.TYPEVAR, ((TypeVariable) comp).asElement().getSimpleName().toString(), null, TypeModel.none,
+						bounds==null ? TypeModel.none : types(bounds), TypeModel.none, "");
+				break;
+			case DECLARED:
+			case ERROR: {
+				DeclaredType dt = (DeclaredType) comp;
+				Element e = dt.asElement();
+				t = new TypeModel(key, TypeModel.CLASS, e.getSimpleName().toString(),
+						comp.getKind()==TypeKind.DECLARED ? classModel((TypeElement) e) : null,
+						types(dt.getTypeArguments()), TypeModel.none, TypeModel.none, dims.toString());
+				break;
+			}
+			default:
+				t = new TypeModel(key, TypeModel.PRIMITIVE, comp.toString(), null, TypeModel.none, TypeModel.none, TypeModel.none, dims.toString());
+		}
+		types.put(key, t);
+		return t;
+	}
+
+	private static String typeVarKey(TypeMirror type) {
+		return type.getKind()==TypeKind.TYPEVAR ? typeVarString((TypeVariable) type) : typeString(type, true);
+	}
+
+	private CommentModel comment(Element e) {
+		return comment(e, elementUtils.getDocComment(e));
+	}
+
+	private CommentModel comment(Element e, String raw) {
+		if(raw==null)
+			raw = "";
+		CommentParser doc = new CommentParser(raw);
+		List<Tag> inline = CommentParser.inlineTags(doc.body);
+		if(inline.isEmpty() && doc.tags.isEmpty() && raw.isEmpty())
+			return CommentModel.empty;
+
+		commentHolder = e;
+		commentRefs = null;
+		List<Tag> since = doc.tags("@since");
+		String[] sinceText = new String[since.size()];
+		for(int i=0; i<sinceText.length; i++)
+			sinceText[i] = since.get(i).text;
+
+		ArrayList<ParamComment> params = new ArrayList<>();
+		ArrayList<ParamComment> typeParams = new ArrayList<>();
+		ArrayList<ThrowsComment> throwsComments = new ArrayList<>();
+		Token[][] returns = CommentModel.noBlocks;
+		boolean executable = e instanceof ExecutableElement;
+		if(executable || isClass(e)) {
+			for(Tag t : doc.tags("@param")) {
+				String[] sa = CommentParser.divideAtWhite(t.text);
+				String typeParam = CommentParser.typeParamName(sa[0]);
+				if(typeParam!=null)
+					typeParams.add(new ParamComment(typeParam, tokens(sa[1])));
+				else if(executable)
+					params.add(new ParamComment(sa[0], tokens(sa[1])));
+			}
+		}
+		if(executable) {
+			for(Tag t : doc.tags("@throws", "@exception")) {
+				String[] sa = CommentParser.divideAtWhite(t.text);
+				Element ex = resolve(sa[0]);
+				throwsComments.add(new ThrowsComment(sa[0], ex instanceof TypeElement ? classType((TypeElement) ex) : null, tokens(sa[1])));
+			}
+			returns = blocks(doc.tags("@return"));
+		}
+
+		List<Tag> see = doc.tags("@see");
+		Token[] seeTokens = new Token[see.size()];
+		for(int i=0; i<seeTokens.length; i++)
+			seeTokens[i] = linkToken("@see", see.get(i).text);
+
+		CommentModel c = new CommentModel(raw, tokens(inline), tokens(CommentParser.firstSentence(doc.body)), !doc.tags.isEmpty(),
+				sinceText, seeTokens, blocks(doc.tags("@deprecated")),
+				params.toArray(ParamComment.none), typeParams.toArray(ParamComment.none),
+				returns, throwsComments.toArray(ThrowsComment.none));
+		commentHolder = null;
+		commentRefs = null;
+		return c;
+	}
+
+	private Token[][] blocks(List<Tag> tags) {
+		if(tags.isEmpty())
+			return CommentModel.noBlocks;
+		Token[][] res = new Token[tags.size()][];
+		for(int i=0; i<res.length; i++)
+			res[i] = tokens(tags.get(i).text);
+		return res;
+	}
+
+	private Token[] tokens(String text) {
+		return tokens(CommentParser.inlineTags(text));
+	}
+
+	private Token[] tokens(List<Tag> tags) {
+		if(tags.isEmpty())
+			return Token.none;
+		Token[] res = new Token[tags.size()];
+		for(int i=0; i<res.length; i++) {
+			Tag t = tags.get(i);
+			switch(t.name) {
+				case "@see":
+				case "@link":
+				case "@linkplain":
+					res[i] = linkToken(t.name, t.text);
+					break;
+				case "@code":
+					res[i] = new Token(Token.CODE, t.text, null, false, null);
+					break;
+				default:
+					res[i] = new Token(Token.TEXT, t.text, null, false, null);
+			}
+		}
+		return res;
+	}
+
+	private Token linkToken(String name, String text) {
+		SeeRef ref = CommentParser.parseSee(text);
+		ElementModel target = null;
+		if(ref.reference!=null) {
+			Element e = resolve(ref.reference);
+			if(e instanceof PackageElement)
+				target = packageModel((PackageElement) e);
+			else if(e instanceof TypeElement)
+				target = classModel((TypeElement) e);
+			else if(e instanceof VariableElement || e instanceof ExecutableElement)
+				target = memberModel(e);
+		}
+		return new Token(Token.LINK, text, ref.label, name.equals("@linkplain"), target);
+	}
+
+	private Element resolve(String signature) {
+		if(commentRefs==null)
+			commentRefs = references(commentHolder);
+		Element e = commentRefs.get(signature);
+		if(e!=null)
+			return e;
+		// references the compiler could not resolve in context (e.g. from package.html):
+		// fall back to the class part, as javadoc 8 did for unknown members
+		int sharp = signature.indexOf('#');
+		String where = sharp<0 ? signature : signature.substring(0, sharp);
+		if(where.isEmpty())
+			return sharp<0 ? null : holderClass();
+		e = commentRefs.get(where);
+		if(e==null)
+			e = elementUtils.getTypeElement(where);
+		if(e==null)
+			e = elementUtils.getPackageElement(where);
+		return e;
+	}
+
+	private TypeElement holderClass() {
+		Element e = commentHolder;
+		while(e!=null && !isClass(e))
+			e = e.getEnclosingElement();
+		return (TypeElement) e;
+	}
+
+	private Map<String, Element> references(Element e) {
+		// doc comment trees are only parsed for comments with references on a page
+		DocCommentTree dc = trees.getDocCommentTree(e);
+		TreePath path = trees.getPath(e);
+		if(dc==null || path==null)
+			return Collections.emptyMap();
+		HashMap<String, Element> refs = new HashMap<>();
+		new DocTreePathScanner<Void, Void>() {
+			@Override
+			public Void visitReference(ReferenceTree ref, Void p) {
+				Element target = trees.getElement(getCurrentPath());
+				if(target!=null)
+					refs.putIfAbsent(ref.getSignature(), target);
+				return null;
+			}
+		}.scan(new DocTreePath(path, dc), null);
+		return refs;
+	}
+
+	public static DocModel build(DocletEnvironment env) {
+		return new ElementModelBuilder(env).build();
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.xrbpowered.doclet;
+
+public class AnnotationModel {
+
+	public static final AnnotationModel[] none = {};
+
+	public static class Value {
+		public static final int CONSTANT = 0;
+		public static final int TYPE = 1;
+		public static final int FIELD = 2;
+		public static final int ANNOTATION = 3;
+		public static final int ARRAY = 4;
+
+		public final int kind;
+		public final String text;
+		public final TypeModel type;
+		public final FieldModel field;
+		public final Value[] values;
+
+		public Value(int kind, String text, TypeModel type, FieldModel field, Value[] values) {
+			this.kind = kind;
+			this.text = text;
+			this.type = type;
+			this.field = field;
+			this.values = values;
+		}
+
+		public boolean hasFieldRefs() {
+			// links to fields other than enum constants depend on the current class
+			if(kind==FIELD)
+				return !field.enumConstant;
+			else if(kind==ARRAY) {
+				for(Value v : values) {
+					if(v.hasFieldRefs())
+						return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	public final String key;
+	public final TypeModel type;
+	public final String[] names;
+	public final Value[] values;
+
+	public AnnotationModel(String key, TypeModel type, String[] names, Value[] values) {
+		this.key = key;
+		this.type = type;
+		this.names = names;
+		this.values = values;
+	}
+
+	public boolean hasFieldRefs() {
+		for(Value v : values) {
+			if(v.hasFieldRefs())
+				return true;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,185 @@
+package com.xrbpowered.doclet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ArchiveSink extends OutputSink {
+
+	// Writes all files into one ZIP or JAR archive. Pages, copies and .gz files are finished by several threads,
+	// so entries are written sorted by path to get the same archive for the same content. Entries are collected
+	// in memory up to bufferSize, then spilled as a sorted run to a temporary file; close() merges the runs.
+
+	public static final long bufferSize = 0x4000000L;
+
+	// earliest ZIP time; entry times are stored as local time, so this is the same in every time zone
+	public static final long entryTime = new GregorianCalendar(1980, Calendar.JANUARY, 1).getTimeInMillis();
+
+	private static class Run {
+		private final DataInputStream in;
+		public String path = null;
+		public byte[] data = null;
+
+		public Run(File file) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 0x10000)));
+			next();
+		}
+
+		public void next() throws IOException {
+			// each entry is marked with true, the end of the run with false
+			if(in.readBoolean()) {
+				path = in.readUTF();
+				data = new byte[in.readInt()];
+				in.readFully(data);
+			}
+			else {
+				path = null;
+				data = null;
+			}
+		}
+	}
+
+	public final File file;
+
+	private final ZipOutputStream zip;
+	private final HashSet<String> names = new HashSet<>();
+	private TreeMap<String, byte[]> entries = new TreeMap<>();
+	private long entryBytes = 0L;
+	private final ArrayList<File> runs = new ArrayList<>();
+
+	public ArchiveSink(File file) {
+		this.file = file;
+		try {
+			File dir = file.getAbsoluteFile().getParentFile();
+			if(dir!=null && !dir.exists())
+				dir.mkdirs();
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 0x10000);
+			zip = file.getName().toLowerCase().endsWith(".jar") ? new JarOutputStream(out) : new ZipOutputStream(out);
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public synchronized void write(String path, byte[] data, int length) throws IOException {
+		if(!names.add(path)) {
+			Doclet.printWarning("Duplicate archive entry: "+path);
+			return;
+		}
+		entries.put(path, Arrays.copyOf(data, length));
+		entryBytes += length;
+		if(entryBytes>bufferSize)
+			spill();
+	}
+
+	private void spill() throws IOException {
+		File run = File.createTempFile("xrbdoc", ".run");
+		run.deleteOnExit();
+		runs.add(run);
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new GZIPOutputStream(new FileOutputStream(run), 0x10000) {{ def.setLevel(Deflater.BEST_SPEED); }}))) {
+			for(Map.Entry<String, byte[]> e : entries.entrySet()) {
+				out.writeBoolean(true);
+				out.writeUTF(e.getKey());
+				out.writeInt(e.getValue().length);
+				out.write(e.getValue());
+			}
+			out.writeBoolean(false);
+		}
+		entries = new TreeMap<>();
+		entryBytes = 0L;
+	}
+
+	@Override
+	public synchronized boolean exists(String path) {
+		return names.contains(path);
+	}
+
+	@Override
+	public synchronized boolean delete(String path) {
+		// spilled copies are skipped when the runs are merged
+		entries.remove(path);
+		return names.remove(path);
+	}
+
+	private void writeEntry(String path, byte[] data) throws IOException {
+		ZipEntry entry = new ZipEntry(path);
+		entry.setTime(entryTime);
+		zip.putNextEntry(entry);
+		zip.write(data);
+		zip.closeEntry();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			if(runs.isEmpty()) {
+				for(Map.Entry<String, byte[]> e : entries.entrySet())
+					writeEntry(e.getKey(), e.getValue());
+			}
+			else {
+				spill();
+				merge();
+			}
+			zip.close();
+		}
+		finally {
+			entries.clear();
+			for(File run : runs)
+				run.delete();
+			runs.clear();
+		}
+	}
+
+	private void merge() throws IOException {
+		// a path written again after delete() is taken from the latest run
+		ArrayList<Run> open = new ArrayList<>();
+		try {
+			for(File file : runs)
+				open.add(new Run(file));
+			for(;;) {
+				String path = null;
+				for(Run r : open) {
+					if(r.path!=null && (path==null || r.path.compareTo(path)<0))
+						path = r.path;
+				}
+				if(path==null)
+					break;
+				byte[] data = null;
+				for(Run r : open) {
+					if(path.equals(r.path)) {
+						data = r.data;
+						r.next();
+					}
+				}
+				if(names.contains(path))
+					writeEntry(path, data);
+			}
+		}
+		finally {
+			for(Run r : open)
+				r.in.close();
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.xrbpowered.doclet;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+public abstract class Assets {
+
+	// With -hashassets, style files are named by their content (doc.css -> doc.<hash>.css), so they can be cached forever.
+	// Assets are registered before any page is rendered, pages then only read the names.
+
+	public static final String manifestFilename = "asset-manifest.json";
+	public static final int hashLength = 10;
+
+	private static final TreeMap<String, String> paths = new TreeMap<>();
+
+	public static String hashedName(String name, byte[] data) {
+		String hash = new Fingerprint().add(data).digest().substring(0, hashLength);
+		int ext = name.lastIndexOf('.');
+		if(ext<0)
+			ext = name.length();
+		return name.substring(0, ext)+"."+hash+name.substring(ext);
+	}
+
+	public static String add(String name, byte[] data) {
+		if(!Options.hashAssets)
+			return name;
+		String path = hashedName(name, data);
+		paths.put(name, path);
+		return path;
+	}
+
+	public static void clear() {
+		paths.clear();
+	}
+
+	public static String path(String name) {
+		String path = paths.get(name);
+		return path==null ? name : path;
+	}
+
+	public static Map<String, String> paths() {
+		return paths;
+	}
+
+	public static void writeManifest() {
+		if(!Options.hashAssets)
+			return;
+		// logical name -> content-addressed path, every path listed here is safe to serve as immutable
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		String sep = "";
+		for(Map.Entry<String, String> e : paths.entrySet()) {
+			sb.append(sep).append("\"").append(e.getKey()).append("\": \"").append(e.getValue()).append("\"");
+			sep = ",\n";
+		}
+		sb.append("\n}\n");
+		try {
+			OutputSink.get().write(manifestFilename, sb.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
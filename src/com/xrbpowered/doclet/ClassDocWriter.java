@@ -2,56 +2,44 @@ package com.xrbpowered.doclet;
 
 import static com.xrbpowered.doclet.WriterUtils.*;
 
-import java.io.PrintStream;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.TreeSet;
 
-import com.sun.javadoc.AnnotationDesc;
-import com.sun.javadoc.AnnotationValue;
-import com.sun.javadoc.ClassDoc;
-import com.sun.javadoc.ConstructorDoc;
-import com.sun.javadoc.Doc;
-import com.sun.javadoc.ExecutableMemberDoc;
-import com.sun.javadoc.FieldDoc;
-import com.sun.javadoc.MethodDoc;
-import com.sun.javadoc.ParamTag;
-import com.sun.javadoc.Parameter;
-import com.sun.javadoc.ProgramElementDoc;
-import com.sun.javadoc.Tag;
-import com.sun.javadoc.ThrowsTag;
-import com.sun.javadoc.Type;
+import com.xrbpowered.doclet.CommentModel.ParamComment;
+import com.xrbpowered.doclet.CommentModel.ThrowsComment;
+import com.xrbpowered.doclet.CommentModel.Token;
 
 public class ClassDocWriter extends HtmlWriter {
 
-	public final ClassDoc cls;
+	public final ClassModel cls;
 	
-	public ClassDocWriter(ClassDoc cls) {
+	public ClassDocWriter(ClassModel cls) {
 		this.cls = cls;
 	}
 
 	@Override
-	protected Doc doc() {
+	protected ElementModel doc() {
 		return cls;
 	}
 	
 	@Override
 	public void print() {
-		printPageStart(cls.name(),
-			String.format("<a href=\"%s.html\">%s</a>", PackageDocWriter.filename, getPackageName())
+		printPageStart(cls.name,
+			"<a href=\""+PackageDocWriter.filename+".html\">"+getPackageName()+"</a>"
 		);
 		
 		printClassSignature();
-		printTypeParamComments(cls.typeParamTags());
+		printTypeParamComments(cls.comment().typeParams);
 		printInfoCard();
 		
 		// class comment
 		printSince(cls);
 		printDeprecatedInfo(cls);
-		printCommentPar(cls.inlineTags());
+		printCommentPar(cls.comment().inline);
 		printSeeTags(cls);
 
 		// summary
@@ -61,25 +49,21 @@ public class ClassDocWriter extends HtmlWriter {
 		sum |= printInnerClasses();
 		
 		// do not sort enum constants!
-		sum |= printFieldList("Enum constants", Arrays.asList(cls.enumConstants()), true);
+		sum |= printFieldList("Enum constants", null, Arrays.asList(cls.enumConstants()), true);
 		
-		ArrayList<FieldDoc> allFields = new ArrayList<>();
-		collectInheritedFields(cls, allFields, null);
+		ArrayList<FieldModel> allFields = new ArrayList<>(Arrays.asList(cls.allFields()));
 		allFields.sort(memberSort);
-		sum |= printSummaryFields("Constants", allFields, Modifier.STATIC | Modifier.FINAL, 0);
-		sum |= printSummaryFields("Static Fields", allFields, Modifier.STATIC, Modifier.FINAL);
-		sum |= printSummaryFields("Instance Fields", allFields, 0, Modifier.STATIC);
+		sum |= printSummaryFields("Constants", ExtFragments.constants, allFields, Modifier.STATIC | Modifier.FINAL, 0);
+		sum |= printSummaryFields("Static Fields", ExtFragments.staticFields, allFields, Modifier.STATIC, Modifier.FINAL);
+		sum |= printSummaryFields("Instance Fields", ExtFragments.instanceFields, allFields, 0, Modifier.STATIC);
 		
-		Arrays.sort(cls.constructors(), methodSort);
-		sum |= printSummaryMethods("Constructors", Arrays.asList(cls.constructors()), 0, 0, null);
+		sum |= printSummaryMethods("Constructors", null, Arrays.asList(cls.constructors()), 0, 0);
 
-		ArrayList<MethodDoc> allMethods = new ArrayList<>();
-		HashMap<MethodDoc, MethodDoc> overrides = new HashMap<>();
-		collectInheritedMethods(cls, allMethods, overrides);
-		allMethods.sort(methodSort);
-		sum |= printSummaryMethods("Abstract Methods", allMethods, Modifier.ABSTRACT, Modifier.STATIC, overrides);
-		sum |= printSummaryMethods(cls.isInterface() ? "Interface Methods" : "Instance Methods", allMethods, 0, Modifier.ABSTRACT | Modifier.STATIC, overrides);
-		sum |= printSummaryMethods("Static Methods", allMethods, Modifier.STATIC, 0, overrides);
+		ArrayList<MethodModel> allMethods = new ArrayList<>(Arrays.asList(cls.allMethods()));
+		allMethods.sort(memberSort);
+		sum |= printSummaryMethods("Abstract Methods", ExtFragments.abstractMethods, allMethods, Modifier.ABSTRACT, Modifier.STATIC);
+		sum |= printSummaryMethods(cls.isInterface ? "Interface Methods" : "Instance Methods", ExtFragments.instanceMethods, allMethods, 0, Modifier.ABSTRACT | Modifier.STATIC);
+		sum |= printSummaryMethods("Static Methods", ExtFragments.staticMethods, allMethods, Modifier.STATIC, 0);
 		
 		if(!sum)
 			printNothingHere();
@@ -88,46 +72,74 @@ public class ClassDocWriter extends HtmlWriter {
 		
 		// details
 		out.println("<div class=\"details\">");
-		for(FieldDoc fld : cls.enumConstants()) {
+		for(FieldModel fld : cls.enumConstants()) {
 			printFieldDetails(fld);
 		}
-		for(FieldDoc fld : cls.fields()) {
+		for(FieldModel fld : cls.fields()) {
 			printFieldDetails(fld);
 		}
-		for(ConstructorDoc con : cls.constructors()) {
-			if(!isDefaultConstructor(con))
-				printMethodDetails(con, null);
+		for(MethodModel con : cls.constructors()) {
+			if(!con.defaultConstructor())
+				printMethodDetails(con);
 		}
-		for(MethodDoc met : cls.methods()) {
-			printMethodDetails(met, overrides.get(met));
+		for(MethodModel met : cls.methods()) {
+			printMethodDetails(met);
 		}
 		out.println("</div>");
 		printPageEnd();
 	}
 	
+	@Override
+	protected boolean fingerprint(Fingerprint fp) {
+		fp.add(Fingerprint.classDigest(cls));
+		fingerprintSupertypes(cls, fp, new HashSet<>());
+		HierarchyIndex hierarchy = Doclet.getHierarchy();
+		for(ClassModel c : hierarchy.getSubclasses(cls))
+			fp.addClassLink(c);
+		for(ClassModel c : hierarchy.getSubinterfaces(cls))
+			fp.addClassLink(c);
+		for(ClassModel c : hierarchy.getImplementing(cls))
+			fp.addClassLink(c);
+		return true;
+	}
+	
+	private void fingerprintSupertypes(ClassModel c, Fingerprint fp, HashSet<ClassModel> visited) {
+		if(c.superclass()!=null && visited.add(c.superclass())) {
+			fp.add(Fingerprint.classDigest(c.superclass()));
+			fingerprintSupertypes(c.superclass(), fp, visited);
+		}
+		for(ClassModel sup : c.interfaces()) {
+			if(visited.add(sup)) {
+				fp.add(Fingerprint.classDigest(sup));
+				fingerprintSupertypes(sup, fp, visited);
+			}
+		}
+	}
+	
 	private void printClassSignature() {
 		out.print("<pre>");
 		printAnnotations(cls);
-		if(cls.isAnnotationType())
+		if(cls.isAnnotationType)
 			out.print(cls.modifiers().replace("interface", "@interface"));
 		else
 			out.print(cls.modifiers());
-		if(!cls.isInterface() && !cls.isAnnotationType())
-			out.print(cls.isEnum() ? " enum" : " class");
-		out.printf(" <span class=\"name\">%s</span>%s", cls.name(), typeParamsString(cls.typeParameters()));
+		if(!cls.isInterface && !cls.isAnnotationType)
+			out.print(cls.isEnum ? " enum" : " class");
+		out.print(" <span class=\"name\">").print(cls.name).print("</span>");
+		printTypeParams(cls.typeParameters());
 		out.println();
 		if(cls.superclass()!=null
-				&& !cls.superclass().qualifiedName().equals("java.lang.Object")
-				&& !cls.superclass().qualifiedName().equals("java.lang.Enum")) {
+				&& !cls.superclass().qualifiedName.equals("java.lang.Object")
+				&& !cls.superclass().qualifiedName.equals("java.lang.Enum")) {
 			out.print("extends ");
-			out.print(typeString(cls.superclassType()));
+			printType(cls.superclassType());
 			out.println();
 		}
 		if(cls.interfaces().length>0) {
-			out.print(cls.isInterface() ? "extends " : "implements ");
+			out.print(cls.isInterface ? "extends " : "implements ");
 			for(int i=0; i<cls.interfaceTypes().length; i++) {
 				if(i>0) out.print(", ");
-				out.print(typeString(cls.interfaceTypes()[i]));
+				printType(cls.interfaceTypes()[i]);
 			}
 			out.println();
 		}
@@ -135,61 +147,59 @@ public class ClassDocWriter extends HtmlWriter {
 	}
 	
 	private void printInfoCard() {
-		PrintStream oldOut = beginTmpOut(); 
+		out.beginCapture();
 		printClassHierarchy();
 		printSuperinterfaces();
 		if(cls.containingClass()!=null) {
 			out.print("<dt>Enclosing class:</dt><dd>");
-			out.print(classLink(cls.containingClass()));
+			printClassLink(cls.containingClass());
 			out.println("</dd>");
 		}
 		printKnownSubclasses();
 		printKnownImplementing(true);
 		printKnownImplementing(false);
-		String infoCard = endTmpOut(oldOut);
-		if(!infoCard.isEmpty()) {
-			out.println("<div class=\"infocard\"><dl>");
-			out.print(infoCard);
+		int start = out.endCapture();
+		if(out.captureLength(start)>0) {
+			out.insert(start, "<div class=\"infocard\"><dl>\n");
 			out.println("</dl></div>");
 		}
 	}
 
-	private void printHierarchy(Type t) {
-		ClassDoc c = t.asClassDoc();
+	private void printHierarchy(ClassModel c, TypeModel t) {
 		if(c!=null && c.superclass()!=null) {
-			printHierarchy(c.superclassType());
+			printHierarchy(c.superclassType().cls, c.superclassType());
 			out.println(" &#11208;");
 		}
 		if(c==cls) {
-			out.print(cls.name());
-			out.print(typeParamsString(cls.typeParameters(), true));
+			out.print(cls.name);
+			printTypeParams(cls.typeParameters(), true);
 		}
 		else
-			out.print(typeString(t));
+			printType(t);
 	}
 
 	private void printClassHierarchy() {
-		if(cls.isInterface())
+		if(cls.isInterface)
 			return;
 		out.println("<dt>Hierarchy:</dt><dd>");
-		printHierarchy(cls);
+		printHierarchy(cls, null);
 		out.println("</dd>");
 	}
 	
-	private void collectSuperInterfaces(ClassDoc c, List<ClassDoc> out, HashSet<String> uniques) {
+	private void collectSuperInterfaces(ClassModel c, List<ClassModel> out, HashSet<String> uniques) {
 		if(uniques==null)
 			uniques = new HashSet<>();
 		if(c.superclass()!=null) {
-			ClassDoc sup = c.superclass();
-			if(sup.isInterface() && !uniques.contains(sup.qualifiedName())) {
-				uniques.add(sup.qualifiedName());
+			ClassModel sup = c.superclass();
+			if(sup.isInterface && !uniques.contains(sup.qualifiedName)) {
+				uniques.add(sup.qualifiedName);
 				out.add(sup);
 			}
 			collectSuperInterfaces(sup, out, uniques);
 		}
-		for(ClassDoc sup : c.interfaces()) {
-			if(sup.isInterface() && !uniques.contains(sup.qualifiedName())) {
-				uniques.add(sup.qualifiedName());
+		for(ClassModel sup : c.interfaces()) {
+			if(sup.isInterface && !uniques.contains(sup.qualifiedName)) {
+				uniques.add(sup.qualifiedName);
 				out.add(sup);
 			}
 			collectSuperInterfaces(sup, out, uniques);
@@ -197,42 +207,28 @@ public class ClassDocWriter extends HtmlWriter {
 	}
 	
 	private void printSuperinterfaces() {
-		List<ClassDoc> list = new ArrayList<>();
+		List<ClassModel> list = new ArrayList<>();
 		collectSuperInterfaces(cls, list, null);
-		printPlainClassList("All "+(cls.isInterface() ? "superinterfaces" : "implemented interfaces"), list);
+		list.sort(classSort);
+		printPlainClassList("All "+(cls.isInterface ? "superinterfaces" : "implemented interfaces"), list);
 	}
 	
 	private void printKnownSubclasses() {
-		if(cls.isInterface())
+		if(cls.isInterface)
 			return;
-		List<ClassDoc> list = new ArrayList<>();
-		for(ClassDoc c : Doclet.listedClasses) {
-			if(c.superclass()==this.cls)
-				list.add(c);
-		}
-		printPlainClassList("Known direct subclasses", list);
+		printPlainClassList("Known direct subclasses", Doclet.getHierarchy().getSubclasses(cls));
 	}
 
 	private void printKnownImplementing(boolean interfaces) {
-		if(!cls.isInterface())
+		if(!cls.isInterface)
 			return;
-		List<ClassDoc> list = new ArrayList<>();
-		for(ClassDoc c : Doclet.listedClasses) {
-			if(c.isInterface()==interfaces) {
-				for(ClassDoc i : c.interfaces()) {
-					if(i==this.cls) {
-						list.add(c);
-						break;
-					}
-				}
-			}
-		}
-		printPlainClassList("Known direct "+(interfaces ? "subinterfaces" : "implementing classes"), list);
+		HierarchyIndex hierarchy = Doclet.getHierarchy();
+		printPlainClassList("Known direct "+(interfaces ? "subinterfaces" : "implementing classes"),
+				interfaces ? hierarchy.getSubinterfaces(cls) : hierarchy.getImplementing(cls));
 	}
 
-	private void printPlainClassList(String dt, List<ClassDoc> list) {
+	private void printPlainClassList(String dt, List<ClassModel> list) {
 		if(!list.isEmpty()) {
-			list.sort(classSort);
 			out.print("<dt>");
 			out.print(dt);
 			out.print(":</dt><dd>");
@@ -241,63 +237,70 @@ public class ClassDocWriter extends HtmlWriter {
 		}
 	}
 
-	private void printPlainClassList(List<ClassDoc> list) {
+	private void printPlainClassList(List<ClassModel> list) {
 		boolean first = true;
-		for(ClassDoc c : list) {
+		for(ClassModel c : list) {
 			if(!first) out.print(", ");
-			out.print(classLink(c));
+			printClassLink(c);
 			first = false;
 		}
 	}
 
-	private boolean printSummaryFields(String title, List<? extends FieldDoc> list, int mods, int noMods) {
-		ArrayList<FieldDoc> fields = new ArrayList<>();
-		for(FieldDoc met : list) {
+	public static int summaryModifiers(MethodModel met, boolean forInterface) {
+		// interface methods are listed as abstract in classes
+		int m = met.modifierSpecifier();
+		if(!forInterface && met.containingClass.isInterface && !met.isStatic())
+			m |= Modifier.ABSTRACT;
+		return m;
+	}
+
+	private boolean printSummaryFields(String title, String section, List<FieldModel> list, int mods, int noMods) {
+		ArrayList<FieldModel> fields = new ArrayList<>();
+		for(FieldModel met : list) {
 			int m = met.modifierSpecifier();
 			if((m&mods)==mods && (m&noMods)==0)
 				fields.add(met);
 		}
-		return printFieldList(title, fields, false);
+		return printFieldList(title, section, fields, false);
 	}
 
-	private boolean printSummaryMethods(String title, List<? extends ExecutableMemberDoc> list,
-			int mods, int noMods, HashMap<MethodDoc, MethodDoc> overrides) {
-		ArrayList<ExecutableMemberDoc> mets = new ArrayList<>();
-		for(ExecutableMemberDoc met : list) {
-			int m = met.modifierSpecifier();
-			if(!cls.isInterface() && met.containingClass().isInterface())
-				m |= Modifier.ABSTRACT;
+	private boolean printSummaryMethods(String title, String section, List<MethodModel> list, int mods, int noMods) {
+		ArrayList<MethodModel> mets = new ArrayList<>();
+		for(MethodModel met : list) {
+			int m = summaryModifiers(met, cls.isInterface);
 			if((m&mods)==mods && (m&noMods)==0)
 				mets.add(met);
 		}
-		return printMethodList(title, mets, overrides);
+		return printMethodList(title, section, mets);
 	}
 
 	private boolean printInnerClasses() {
 		if(cls.innerClasses().length==0)
 			return false;
 		out.println("<div class=\"summary-item\">");
-		out.printf("<h5>%s</h5>\n", "Nested Classes");
+		out.println("<h5>Nested Classes</h5>");
 		out.println("<table>");
-		for(ClassDoc c : cls.innerClasses()) {
+		for(ClassModel c : cls.innerClasses()) {
 			out.print("<tr><td class=\"mods\">");
 			
 			out.print("<code>");
 			String mods = Modifier.toString(c.modifierSpecifier() & ~Modifier.PUBLIC);
 			if(!mods.isEmpty()) {
 				out.print(mods);
-				if(!c.isInterface()) out.print(" ");
+				if(!c.isInterface) out.print(" ");
 			}
-			if(!c.isInterface())
+			if(!c.isInterface)
 				out.print(" class");
 			out.print("</code>");
 			out.println("</td><td>");
 			
-			out.printf("<code><span class=\"name\">%s</span>", classLink(c));
+			out.print("<code><span class=\"name\">");
+			printClassLink(c);
+			out.print("</span>");
 			out.print("</code>\n");
 			
-			Tag[] info = c.firstSentenceTags();
-			if(info!=null && info.length>0) {
+			Token[] info = c.comment().firstSentence;
+			if(info.length>0) {
 				out.print("<br/>");
 				printCommentLine(info);
 			}
@@ -308,63 +311,29 @@ public class ClassDocWriter extends HtmlWriter {
 		return true;
 	}
 	
-	private void collectInheritedMethods(ClassDoc c, List<MethodDoc> out, HashMap<MethodDoc, MethodDoc> overrides) {
-		for(MethodDoc cm : c.methods()) {
-			boolean overriden = false;
-			for(MethodDoc m : out) {
-				if(m.overrides(cm)) {
-					if(!overrides.containsKey(m))
-						overrides.put(m, cm);
-					overriden = true;
-					break;
-				}
-			}
-			if(!overriden)
-				out.add(cm);
-		}
-		if(c.superclass()!=null)
-			collectInheritedMethods(c.superclass(), out, overrides);
-		for(ClassDoc imp : c.interfaces())
-			collectInheritedMethods(imp, out, overrides);
-	}
-	
-	private void collectInheritedFields(ClassDoc c, List<FieldDoc> out, HashSet<String> hideMask) {
-		if(hideMask==null)
-			hideMask = new HashSet<>();
-		for(FieldDoc m : c.fields()) {
-			if(hideMask.contains(m.name()))
-				continue;
-			out.add(m);
-			hideMask.add(m.name());
-		}
-		if(c.superclass()!=null)
-			collectInheritedFields(c.superclass(), out, hideMask);
-		for(ClassDoc imp : c.interfaces())
-			collectInheritedFields(imp, out, hideMask);
-	}
-	
-	public static boolean isDefaultConstructor(ExecutableMemberDoc met) {
-		return met.isConstructor() && (met.position()==null || met.position().line()==met.containingClass().position().line());
-	}
-	
-	private boolean  printFieldList(String title, List<? extends FieldDoc> list, boolean enumConstants) {
+	private boolean  printFieldList(String title, String section, List<FieldModel> list, boolean enumConstants) {
 		if(list.isEmpty())
 			return false;
 		out.println("<div class=\"summary-item\">");
-		out.printf("<h5>%s</h5>\n", title);
+		out.print("<h5>").print(title).println("</h5>");
 		out.println("<table>");
 		
 		int count = list.size();
 		boolean startedUnknowns = false;
 		int i=0;
-		for(FieldDoc fld : list) {
-			boolean inherited = fld.containingClass()!=cls;
-			boolean unknown = inherited && !Doclet.listedClasses.contains(fld.containingClass());
+		for(FieldModel fld : list) {
+			boolean inherited = fld.containingClass!=cls;
+			boolean unknown = inherited && !fld.containingClass.listed;
 			
 			if(unknown) {
 				if(!startedUnknowns) {
-					out.printf("<tr class=\"inherited toggle\" onclick=\"toggleExt(this)\">"+
-							"<td colspan=\"2\">Show all inherited fields (%d more)</td></tr>\n", count-i);
+					out.print("<tr class=\"inherited toggle\" onclick=\"toggleExt(this)\"");
+					boolean shared = section!=null && ExtFragments.isEnabled();
+					if(shared)
+						printExtFragments(section, list.subList(i, count));
+					out.print("><td colspan=\"2\">Show all inherited fields (").print(count-i).println(" more)</td></tr>");
+					if(shared)
+						break; // external members are sorted last, the rest of the list is loaded from shared fragments
 					out.print("<tr class=\"inherited ext sep hide\">");
 					startedUnknowns = true;
 				}
@@ -373,43 +342,7 @@ public class ClassDocWriter extends HtmlWriter {
 			}
 			else
 				out.print(inherited ?"<tr class=\"inherited\">" : "<tr>");
-
-			if(!enumConstants) {
-				out.println("<td class=\"mods\">");
-				out.print("<code>");
-				String mods = Modifier.toString(fld.modifierSpecifier() & ~Modifier.PUBLIC);
-				if(!mods.isEmpty()) {
-					out.print(mods);
-					out.print(" ");
-				}
-				out.print(typeString(fld.type()));
-				out.println("</code></td>");
-			}
-			
-			out.print("<td>");
-			if(unknown)
-				out.printf("<code><span class=\"name\"><a class=\"extern\">%s</a></span>", fld.name());
-			else if(inherited)
-				out.printf("<code><span class=\"name\"><a href=\"%s.html#%s\">%s</a></span>",
-						fld.containingClass().name(), memberAnchor(fld), fld.name());
-			else
-				out.printf("<code><span class=\"name\"><a href=\"#%s\">%s</a></span>",
-						memberAnchor(fld), fld.name());
-			out.print("</code>\n");
-
-			if(isDeprecated(fld))
-				out.print("<br/><span class=\"depr\">Deprecated</span>");
-			else if(inherited)
-				out.printf("<br/>Inherited from <code>%s</code>.", classLink(fld.containingClass()));
-			else {
-				Tag[] info = fld.firstSentenceTags();
-				if(info.length>0) {
-					out.print("<br/>");
-					printCommentLine(info);
-				}
-			}
-			out.println("</td></tr>");
-			
+			printFieldRow(fld, inherited, unknown, enumConstants);
 			i++;
 		}
 		out.println("</table>");
@@ -417,38 +350,77 @@ public class ClassDocWriter extends HtmlWriter {
 		return true;
 	}
 	
-	private boolean printMethodList(String title, List<? extends ExecutableMemberDoc> list, HashMap<MethodDoc, MethodDoc> overrides) {
+	protected void printFieldRow(FieldModel fld, boolean inherited, boolean unknown, boolean enumConstants) {
+		if(!enumConstants) {
+			out.println("<td class=\"mods\">");
+			out.print("<code>");
+			String mods = Modifier.toString(fld.modifierSpecifier() & ~Modifier.PUBLIC);
+			if(!mods.isEmpty()) {
+				out.print(mods);
+				out.print(" ");
+			}
+			printType(fld.type());
+			out.println("</code></td>");
+		}
+		
+		out.print("<td>");
+		out.print("<code><span class=\"name\">");
+		if(unknown)
+			out.print("<a class=\"extern\">");
+		else if(inherited)
+			out.print("<a href=\"").print(fld.containingClass.name).print(".html#").print(fld.anchor()).print("\">");
+		else
+			out.print("<a href=\"#").print(fld.anchor()).print("\">");
+		out.print(fld.name).print("</a></span>");
+		out.print("</code>\n");
+
+		if(fld.deprecated())
+			out.print("<br/><span class=\"depr\">Deprecated</span>");
+		else if(inherited)
+			printInheritedFrom(fld.containingClass);
+		else {
+			Token[] info = fld.comment().firstSentence;
+			if(info.length>0) {
+				out.print("<br/>");
+				printCommentLine(info);
+			}
+		}
+		out.println("</td></tr>");
+	}
+	
+	private boolean printMethodList(String title, String section, List<MethodModel> list) {
 		if(list.isEmpty())
 			return false;
 		out.println("<div class=\"summary-item\">");
-		out.printf("<h5>%s</h5>\n", title);
+		out.print("<h5>").print(title).println("</h5>");
 		out.println("<table>");
 		
 		int count = list.size();
 		String[] mods = new String[count];
 		int i = 0;
 		boolean hasMods = false;
-		for(ExecutableMemberDoc met : list) {
-			int m = met.modifierSpecifier() & ~Modifier.PUBLIC;
-			if(!cls.isInterface() && met.containingClass().isInterface() && !met.isStatic())
-				m |= Modifier.ABSTRACT;
-			mods[i] = Modifier.toString(m);
-			if(met.isMethod() || !mods[i].isEmpty() || met.typeParameters().length>0)
+		for(MethodModel met : list) {
+			mods[i] = Modifier.toString(summaryModifiers(met, cls.isInterface) & ~Modifier.PUBLIC);
+			if(met.method || !mods[i].isEmpty() || met.typeParameters().length>0)
 				hasMods = true;
 			i++;
 		}
 		
 		boolean startedUnknowns = false;
 		i = 0;
-		for(ExecutableMemberDoc met : list) {
-			boolean inherited = met.containingClass()!=cls;
-			boolean unknown = inherited && !Doclet.listedClasses.contains(met.containingClass());
-			boolean defaultConstructor = isDefaultConstructor(met);
+		for(MethodModel met : list) {
+			boolean inherited = met.containingClass!=cls;
+			boolean unknown = inherited && !met.containingClass.listed;
 			
 			if(unknown) {
 				if(!startedUnknowns) {
-					out.printf("<tr class=\"inherited toggle\" onclick=\"toggleExt(this)\">"+
-							"<td colspan=\"2\">Show all inherited methods (%d more)</td></tr>\n", count-i);
+					out.print("<tr class=\"inherited toggle\" onclick=\"toggleExt(this)\"");
+					boolean shared = section!=null && ExtFragments.isEnabled();
+					if(shared)
+						printExtFragments(section, list.subList(i, count));
+					out.print("><td colspan=\"2\">Show all inherited methods (").print(count-i).println(" more)</td></tr>");
+					if(shared)
+						break; // external members are sorted last, the rest of the list is loaded from shared fragments
 					out.print("<tr class=\"inherited ext sep hide\">");
 					startedUnknowns = true;
 				}
@@ -457,75 +429,115 @@ public class ClassDocWriter extends HtmlWriter {
 			}
 			else
 				out.print(inherited ?"<tr class=\"inherited\">" : "<tr>");
-
-			if(hasMods) {
-				out.println("<td class=\"mods\">");
-				out.print("<code>");
-				if(!mods[i].isEmpty()) {
-					out.print(mods[i]);
-					out.print(" ");
-				}
-				out.print(typeParamsString(met.typeParameters()));
-				if(met.isMethod())
-					out.print(typeString(((MethodDoc) met).returnType()));
-				out.println("</code></td>");
+			printMethodRow(met, mods[i], hasMods, inherited, unknown);
+			i++;
+		}
+		out.println("</table>");
+		out.println("</div>");
+		return true;
+	}
+	
+	protected void printMethodRow(MethodModel met, String mods, boolean hasMods, boolean inherited, boolean unknown) {
+		boolean defaultConstructor = met.defaultConstructor();
+		if(hasMods) {
+			out.println("<td class=\"mods\">");
+			out.print("<code>");
+			if(!mods.isEmpty()) {
+				out.print(mods);
+				out.print(" ");
+			}
+			printTypeParams(met.typeParameters());
+			if(met.method)
+				printType(met.returnType());
+			out.println("</code></td>");
+		}
+		
+		out.print("<td>");
+		out.print("<code><span class=\"name\">");
+		if(unknown || defaultConstructor)
+			out.print("<a class=\"extern\">");
+		else if(inherited)
+			out.print("<a href=\"").print(met.containingClass.name).print(".html#").print(met.anchor()).print("\">");
+		else
+			out.print("<a href=\"#").print(met.anchor()).print("\">");
+		out.print(met.name).print("</a></span> (");
+		printMethodSignature(met, false, unknown);
+		out.print(")</code>\n");
+		
+		if(met.deprecated())
+			out.print("<br/><span class=\"depr\">Deprecated</span>");
+		else if(defaultConstructor)
+			out.print("<br/>Default constructor.");
+		else if(inherited)
+			printInheritedFrom(met.containingClass);
+		else {
+			Token[] info = met.comment().firstSentence;
+			if(info.length>0) {
+				out.print("<br/>");
+				printCommentLine(info);
 			}
-			
-			out.print("<td>");
-			if(unknown || defaultConstructor)
-				out.printf("<code><span class=\"name\"><a class=\"extern\">%s</a></span> (", met.name());
-			else if(inherited)
-				out.printf("<code><span class=\"name\"><a href=\"%s.html#%s\">%s</a></span> (",
-						met.containingClass().name(), methodAnchor(met), met.name());
-			else
-				out.printf("<code><span class=\"name\"><a href=\"#%s\">%s</a></span> (",
-						methodAnchor(met), met.name());
-			printMethodSignature(met, false, unknown);
-			out.print(")</code>\n");
-			
-			if(isDeprecated(met))
-				out.print("<br/><span class=\"depr\">Deprecated</span>");
-			else if(defaultConstructor)
-				out.print("<br/>Default constructor.");
-			else if(inherited)
-				out.printf("<br/>Inherited from <code>%s</code>.", classLink(met.containingClass()));
 			else {
-				Tag[] info = met.firstSentenceTags();
+				MethodModel copy = getReplacementDoc(met);
+				info = copy.comment().firstSentence;
 				if(info.length>0) {
 					out.print("<br/>");
 					printCommentLine(info);
 				}
-				else if(overrides!=null) {
-					ExecutableMemberDoc copy = getReplacementDoc(met, overrides.get(met));
-					info = copy.firstSentenceTags();
-					if(info.length>0) {
-						out.print("<br/>");
-						printCommentLine(info);
-					}
+			}
+		}
+		out.println("</td></tr>");
+	}
+	
+	private void printExtFragments(String section, List<? extends MemberModel> external) {
+		TreeSet<String> keys = new TreeSet<>();
+		HashSet<Integer> shown = new HashSet<>();
+		for(MemberModel mem : external) {
+			ExtFragments.Fragment f = ExtFragments.get(mem.containingClass, cls.isInterface);
+			keys.add(f.key);
+			shown.add(f.rank(mem));
+		}
+		out.attr("data-section", section).attr("data-ext", String.join(" ", keys));
+		
+		// fragments have rows for all members seen in any subclass, hide the ones overridden here
+		StringBuilder hide = new StringBuilder();
+		for(String key : keys) {
+			ExtFragments.Fragment f = ExtFragments.get(key);
+			for(MemberModel mem : f.getSection(section)) {
+				int rank = f.rank(mem);
+				if(!shown.contains(rank)) {
+					if(hide.length()>0)
+						hide.append(' ');
+					hide.append(rank);
 				}
 			}
-			out.println("</td></tr>");
-			
-			i++;
 		}
-		out.println("</table>");
-		out.println("</div>");
-		return true;
+		if(hide.length()>0)
+			out.attr("data-hide", hide.toString());
+	}
+	
+	private void printInheritedFrom(ClassModel c) {
+		out.print("<br/>Inherited from <code>");
+		printClassLink(c);
+		out.print("</code>.");
+	}
+	
+	private void printMemberHeader(String anchor, String name) {
+		out.print("<h3><a class=\"alink\" id=\"").print(anchor).print("\" href=\"#").print(anchor).print("\">");
+		out.print(name).println("</a></h3>");
 	}
 	
-	private void printFieldDetails(FieldDoc fld) {
-		String anchor = memberAnchor(fld);
+	private void printFieldDetails(FieldModel fld) {
 		out.println("<div class=\"member\">");
-		out.printf("<h3><a class=\"alink\" id=\"%s\" href=\"#%s\">%s</a></h3>\n", anchor, anchor, fld.name());
+		printMemberHeader(fld.anchor(), fld.name);
 		
 		out.print("<pre>");
 		printAnnotations(fld);
 		out.print(fld.modifiers());
 		out.print(" ");
-		out.print(typeString(fld.type()));
+		printType(fld.type());
 		out.print(" ");
-		out.printf("<span class=\"name\">%s</span>", fld.name());
-		String val = fld.constantValueExpression();
+		out.print("<span class=\"name\">").print(fld.name).print("</span>");
+		String val = fld.constantValue();
 		if(val!=null && !val.isEmpty()) {
 			out.print(" = ");
 			out.print(val);
@@ -534,40 +546,40 @@ public class ClassDocWriter extends HtmlWriter {
 		
 		printSince(fld);
 		printDeprecatedInfo(fld);
-		printCommentPar(fld.inlineTags());
+		printCommentPar(fld.comment().inline);
 		
 		printSeeTags(fld);
 		out.println("</div>");
 	}
 	
-	private void printMethodDetails(ExecutableMemberDoc met, MethodDoc overriden) {
-		String anchor = methodAnchor(met);
+	private void printMethodDetails(MethodModel met) {
+		MethodModel overriden = met.overridden();
 		out.println("<div class=\"member\">");
-		out.printf("<h3><a class=\"alink\" id=\"%s\" href=\"#%s\">%s</a></h3>\n", anchor, anchor, met.name());
+		printMemberHeader(met.anchor(), met.name);
 		
 		out.print("<pre>");
 		printAnnotations(met);
 		out.print(met.modifiers());
 		out.print(" ");
-		out.print(typeParamsString(met.typeParameters()));
-		if(met.isMethod()) {
-			out.print(typeString(((MethodDoc) met).returnType()));
+		printTypeParams(met.typeParameters());
+		if(met.method) {
+			printType(met.returnType());
 			out.print(" ");
 		}
-		out.printf("<span class=\"name\">%s</span> (", met.name());
+		out.print("<span class=\"name\">").print(met.name).print("</span> (");
 		printMethodSignature(met, true, false);
 		out.print(")");
-		Type[] throwTypes = met.thrownExceptionTypes();
+		TypeModel[] throwTypes = met.thrownTypes();
 		if(throwTypes.length>0) {
 			out.print(" throws ");
 			if(throwTypes.length==1)
-				out.print(typeString(throwTypes[0]));
+				printType(throwTypes[0]);
 			else {
 				boolean first = true;
-				for(Type tt : throwTypes) {
+				for(TypeModel tt : throwTypes) {
 					if(!first) out.print(",");
 					out.print("\n\t");
-					out.print(typeString(tt));
+					printType(tt);
 					first = false;
 				}
 			}
@@ -577,50 +589,56 @@ public class ClassDocWriter extends HtmlWriter {
 		printSince(met);
 		
 		if(overriden!=null) {
-			out.printf("<p class=\"overrides\">%s <code>%s</code>.",
-					overriden.isAbstract() || overriden.containingClass().isInterface() ? "Implements" : "Overrides",
-					memberLink(overriden));
+			out.print("<p class=\"overrides\">");
+			out.print(overriden.isAbstract() || overriden.containingClass.isInterface ? "Implements" : "Overrides");
+			out.print(" <code>");
+			printMemberLink(overriden);
+			out.print("</code>.");
 			
-			if(met.inlineTags().length==0 && met.tags().length==0) {
-				MethodDoc copy = overriden;
-				if(copy.inlineTags().length>0 || copy.tags().length>0) {
+			if(met.comment().isEmpty()) {
+				MethodModel copy = overriden;
+				if(!copy.comment().isEmpty()) {
 					out.print(" Copied description:");
 					met = copy;
 				}
 			}
 			out.println("</p>");
 		}
-		else if(met.inlineTags().length==0 && met.tags().length==0) {
-			met = getReplacementDoc(met, null);
+		else if(met.comment().isEmpty()) {
+			met = getReplacementDoc(met);
 		}
 
 		printDeprecatedInfo(met);
-		printCommentPar(met.inlineTags());
+		printCommentPar(met.comment().inline);
 		
-		printTypeParamComments(met.typeParamTags());
-		if(met.paramTags().length>0) {
+		printTypeParamComments(met.comment().typeParams);
+		if(met.comment().params.length>0) {
 			out.println("<h5>Parameters</h5>");
 			out.println("<dl class=\"code\">");
-			for(ParamTag t : met.paramTags()) {
-				out.printf("<dt><code>%s</code></dt><dd>", t.parameterName());
-				printCommentText(t.inlineTags(), false);
+			for(ParamComment t : met.comment().params) {
+				out.print("<dt><code>").print(t.name).print("</code></dt><dd>");
+				printCommentText(t.text, false);
 				out.println("</dd>");
 			}
 			out.println("</dl>");
 		}
-		if(met.isMethod()) {
-			for(Tag t : met.tags("@return")) {
+		if(met.method) {
+			for(Token[] t : met.comment().returns) {
 				out.print("<h5>Returns</h5>\n<p class=\"ind\">");
-				printCommentText(t.inlineTags(), false);
+				printCommentText(t, false);
 			}
 		}
-		if(met.throwsTags().length>0) {
+		if(met.comment().throwsTags.length>0) {
 			out.println("<h5>Throws</h5>");
 			out.println("<dl class=\"code\">");
-			for(ThrowsTag t : met.throwsTags()) {
-				out.printf("<dt><code>%s</code></dt><dd>",
-						t.exceptionType()==null ? t.exceptionName() : typeString(t.exceptionType()));
-				printCommentText(t.inlineTags(), false);
+			for(ThrowsComment t : met.comment().throwsTags) {
+				out.print("<dt><code>");
+				if(t.exceptionType==null)
+					out.print(t.exceptionName);
+				else
+					printType(t.exceptionType);
+				out.print("</code></dt><dd>");
+				printCommentText(t.text, false);
 				out.println("</dd>");
 			}
 			out.println("</dl>");
@@ -630,86 +648,92 @@ public class ClassDocWriter extends HtmlWriter {
 		out.println("</div>");
 	}
 
-	protected String annotationValueString(AnnotationValue v) {
-		Object obj = v.value();
-		if(obj instanceof Type)
-			return typeString((Type) obj);
-		else if(obj instanceof FieldDoc)
-			return memberLink((FieldDoc) obj);
-		else if(obj instanceof AnnotationDesc)
-			return typeString(((AnnotationDesc) obj).annotationType());
-		else if(obj instanceof AnnotationValue[]) {
-			StringBuilder sb = new StringBuilder();
-			sb.append("{");
-			AnnotationValue[] vals = (AnnotationValue[]) obj;
-			boolean first = true;
-			for(AnnotationValue val : vals) {
-				if(!first) sb.append(", ");
-				sb.append(annotationValueString(val));
-				first = false;
-			}
-			sb.append("}");
-			return sb.toString();
-		}
-		else
-			return obj.toString();
-	}
-
-	protected void printAnnotations(ProgramElementDoc doc) {
-		for(AnnotationDesc ann : doc.annotations()) {
-			out.print(typeString(ann.annotationType()));
-			if(ann.elementValues().length>0) {
-				out.print("(");
+	protected void printAnnotationValue(AnnotationModel.Value v) {
+		switch(v.kind) {
+			case AnnotationModel.Value.TYPE:
+			case AnnotationModel.Value.ANNOTATION:
+				printType(v.type);
+				break;
+			case AnnotationModel.Value.FIELD:
+				printMemberLink(v.field);
+				break;
+			case AnnotationModel.Value.ARRAY:
+				out.print("{");
 				boolean first = true;
-				for(AnnotationDesc.ElementValuePair ev : ann.elementValues()) {
+				for(AnnotationModel.Value val : v.values) {
 					if(!first) out.print(", ");
-					out.printf("%s=%s", ev.element().name(), annotationValueString(ev.value()));
+					printAnnotationValue(val);
 					first = false;
 				}
-				out.print(")");
+				out.print("}");
+				break;
+			default:
+				out.print(v.text);
+		}
+	}
+
+	protected void printAnnotation(AnnotationModel ann) {
+		printType(ann.type);
+		if(ann.values.length>0) {
+			out.print("(");
+			for(int i=0; i<ann.values.length; i++) {
+				if(i>0) out.print(", ");
+				out.print(ann.names[i]).print('=');
+				printAnnotationValue(ann.values[i]);
 			}
+			out.print(")");
+		}
+	}
+
+	protected void printAnnotations(ElementModel doc) {
+		for(AnnotationModel ann : doc.annotations()) {
+			StringBuilder key = new StringBuilder();
+			key.append(link().path).append('\n').append(ann.key);
+			// links to fields other than enum constants depend on the current class
+			if(ann.hasFieldRefs())
+				key.append('\n').append(cls.qualifiedName);
+			printCached(key.toString(), () -> printAnnotation(ann));
 			out.println();
 		}
 	}
 	
-	protected void printDeprecatedInfo(ProgramElementDoc doc) {
-		if(isDeprecated(doc)) {
+	protected void printDeprecatedInfo(ElementModel doc) {
+		if(doc.deprecated()) {
 			out.println("<div class=\"depr\"><p><span class=\"depr\">Deprecated.</span>");
-			for(Tag t : doc.tags("@deprecated")) {
-				printCommentPar(t.inlineTags());
+			for(Token[] t : doc.comment().deprecated) {
+				printCommentPar(t);
 			}
 			out.println("</div>");
 		}
 	}
 	
-	private void printTypeParamComments(ParamTag[] ptags) {
+	private void printTypeParamComments(ParamComment[] ptags) {
 		if(ptags.length>0) {
 			out.println("<h5>Type parameters</h5>");
 			out.println("<dl class=\"code\">");
-			for(ParamTag t : ptags) {
-				out.printf("<dt><code>%s</code></dt><dd>", t.parameterName());
-				printCommentText(t.inlineTags(), false);
+			for(ParamComment t : ptags) {
+				out.print("<dt><code>").print(t.name).print("</code></dt><dd>");
+				printCommentText(t.text, false);
 				out.println("</dd>");
 			}
 			out.println("</dl>");
 		}
 	}
 	
-	private void printMethodSignature(ExecutableMemberDoc met, boolean multiline, boolean skipNames) {
-		Parameter[] pars = met.parameters();
-		if(pars!=null && pars.length>0) {
+	private void printMethodSignature(MethodModel met, boolean multiline, boolean skipNames) {
+		TypeModel[] pars = met.paramTypes();
+		if(pars.length>0) {
 			if(multiline)
 				out.println();
 			for(int i=0; i<pars.length; i++) {
-				Parameter p = pars[i];
 				if(multiline)
 					out.print("\t");
 				else if(i>0)
 					out.print(", ");
-				out.print(typeString(p.type(), met.isVarArgs() && i==pars.length-1));
+				printType(pars[i], met.varArgs() && i==pars.length-1);
 				if(!skipNames) {
 					out.print(" ");
-					out.print(p.name());
+					out.print(met.paramNames()[i]);
 				}
 				if(multiline)
 					out.print((i<pars.length-1) ? ",\n" : "\n");
@@ -719,11 +743,11 @@ public class ClassDocWriter extends HtmlWriter {
 	
 	@Override
 	protected String getPackageName() {
-		return cls.containingPackage().name();
+		return cls.packageName;
 	}
 	
 	@Override
 	protected String getFilename() {
-		return cls.name();
+		return cls.name;
 	}
 }
@@ -5,45 +5,168 @@ import static com.xrbpowered.doclet.WriterUtils.*;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.sun.javadoc.ClassDoc;
-import com.sun.javadoc.Doc;
-
 public class ClassIndexWriter extends HtmlWriter {
 
 	public static final String filename = "allclasses";
-	
-	public final List<ClassDoc> classList;
-	
-	public ClassIndexWriter(ClassDoc[] list) {
-		classList = new ArrayList<>(list.length);
-		for(ClassDoc cls : list)
-			classList.add(cls);
-		classList.sort(classSimpleNameSort);
-	}
-	
+
+	public static class Shard {
+		public final String key;
+		public final String label;
+		public final int from;
+		public final int to;
+
+		public Shard(String key, String label, int from, int to) {
+			this.key = key;
+			this.label = label;
+			this.from = from;
+			this.to = to;
+		}
+
+		public String getFilename() {
+			return filename+"-"+key;
+		}
+	}
+
+	public final List<ClassModel> classList;
+	public final List<Shard> shards;
+	public final Shard shard;
+
+	public ClassIndexWriter(List<ClassModel> list) {
+		this(sortClasses(list), null, null);
+	}
+
+	public ClassIndexWriter(List<ClassModel> sortedList, List<Shard> shards, Shard shard) {
+		// the sorted list is shared between the landing page and all shards
+		classList = sortedList;
+		this.shards = shards;
+		this.shard = shard;
+	}
+
+	public static List<ClassModel> sortClasses(List<ClassModel> list) {
+		List<ClassModel> sorted = new ArrayList<>(list);
+		sorted.sort(classSimpleNameSort);
+		return sorted;
+	}
+
+	private static String letterKey(char c) {
+		// keep file names distinct on case-insensitive file systems
+		if(c>='A' && c<='Z' || c>='0' && c<='9')
+			return Character.toString(c);
+		else
+			return "x"+Integer.toHexString(c);
+	}
+
+	private static void addShard(List<Shard> shards, List<Character> letters, List<Integer> starts, int end) {
+		if(letters.isEmpty())
+			return;
+		char first = letters.get(0);
+		char last = letters.get(letters.size()-1);
+		if(first==last)
+			shards.add(new Shard(letterKey(first), Character.toString(first), starts.get(0), end));
+		else
+			shards.add(new Shard(letterKey(first)+"-"+letterKey(last), first+"&ndash;"+last, starts.get(0), end));
+		letters.clear();
+		starts.clear();
+	}
+
+	public static List<Shard> split(List<ClassModel> sortedList, int maxSize) {
+		// one shard per initial letter, or letters merged and split to at most maxSize classes
+		List<Shard> shards = new ArrayList<>();
+		List<Character> letters = new ArrayList<>();
+		List<Integer> starts = new ArrayList<>();
+		int n = sortedList.size();
+		int start = 0;
+		while(start<n) {
+			char c = sortedList.get(start).simpleTypeName.charAt(0);
+			int end = start+1;
+			while(end<n && sortedList.get(end).simpleTypeName.charAt(0)==c)
+				end++;
+			int size = end-start;
+			if(maxSize>0 && size>maxSize) {
+				addShard(shards, letters, starts, start);
+				int parts = (size+maxSize-1)/maxSize;
+				for(int i=0; i<parts; i++) {
+					int from = start+size*i/parts;
+					int to = start+size*(i+1)/parts;
+					shards.add(new Shard(letterKey(c)+(i+1), c+" ("+(i+1)+")", from, to));
+				}
+			}
+			else {
+				if(maxSize==0 || !starts.isEmpty() && end-starts.get(0)>maxSize)
+					addShard(shards, letters, starts, start);
+				letters.add(c);
+				starts.add(start);
+			}
+			start = end;
+		}
+		addShard(shards, letters, starts, n);
+		return shards;
+	}
+
 	@Override
-	protected Doc doc() {
+	protected ElementModel doc() {
 		return null;
 	}
 
-	@Override
-	public void print() {
-		printPageStart("Class Index");
+	private void printShardLinks() {
+		out.print("<div class=\"infocard\"><p>");
+		for(Shard s : shards) {
+			if(s==shard)
+				out.print("<b>").print(s.label).print("</b>");
+			else
+				out.link(s.getFilename()+".html", (s.to-s.from)+" classes", s.label);
+			out.println(" ");
+		}
+		out.println("</p></div>");
+	}
 
+	private void printClasses(int from, int to) {
 		PackageLink link = PackageLink.root();
 		out.println("<div class=\"index\"><p>");
-		for(ClassDoc c : classList) {
-			out.printf("<a href=\"%s\" title=\"%s\">%s</a>", link.relativeLink(c), c.qualifiedName(), c.simpleTypeName());
-			out.println("<br/>");
+		for(ClassModel c : classList.subList(from, to)) {
+			// keep the title even in compact mode: the class filter matches package names against it
+			out.openTag("a").attr("href", link.relativeLink(c)).attr("title", c.qualifiedName).closeTag();
+			out.print(c.simpleTypeName).endTag("a").println("<br/>");
 		}
 		out.println("</p></div>");
-		
+	}
+
+	@Override
+	public void print() {
+		if(shards==null) {
+			printPageStart("Class Index");
+			printClasses(0, classList.size());
+		}
+		else if(shard==null) {
+			// landing page, doc.js loads the shards into #classIndex
+			printPageStart("Class Index");
+			printShardLinks();
+			out.println("<p><input id=\"classFilter\" type=\"search\" placeholder=\"Filter classes\" autocomplete=\"off\" oninput=\"filterClassIndex(this.value)\" /></p>");
+			out.print("<div class=\"index\" id=\"classIndex\" data-shards=\"");
+			for(int i=0; i<shards.size(); i++) {
+				if(i>0) out.print(' ');
+				out.print(shards.get(i).getFilename()).print(".html");
+			}
+			out.println("\"></div>");
+		}
+		else {
+			printPageStart("Classes "+shard.label, "<a href=\""+filename+".html\">Class Index</a>");
+			printShardLinks();
+			printClasses(shard.from, shard.to);
+		}
 		printPageEnd();
 	}
 
+	@Override
+	protected boolean fingerprint(Fingerprint fp) {
+		// only depends on the list of classes
+		fp.add(shards==null ? -1 : Options.indexShardSize);
+		return true;
+	}
+
 	@Override
 	protected String getFilename() {
-		return filename;
+		return shard==null ? filename : shard.getFilename();
 	}
-	
+
 }
@@ -0,0 +1,146 @@
+package com.xrbpowered.doclet;
+
+public class ClassModel extends ElementModel {
+
+	public static final ClassModel[] none = {};
+
+	public final String qualifiedName;
+	public final String simpleTypeName;
+	public final String packageName;
+	public final boolean isInterface;
+	public final boolean isAnnotationType;
+	public final boolean isEnum;
+
+	private ClassModel containingClass = null;
+	private TypeModel[] typeParameters = TypeModel.none;
+
+	// the rest is only filled in for listed classes and their supertypes
+	private boolean detailed = false;
+	private ClassModel superclass = null;
+	private TypeModel superclassType = null;
+	private ClassModel[] interfaces = none;
+	private TypeModel[] interfaceTypes = TypeModel.none;
+	private ClassModel[] innerClasses = none;
+	private FieldModel[] enumConstants = FieldModel.none;
+	private FieldModel[] fields = FieldModel.none;
+	private MethodModel[] constructors = MethodModel.none;
+	private MethodModel[] methods = MethodModel.none;
+
+	// including inherited members, only for listed classes
+	private FieldModel[] allFields = FieldModel.none;
+	private MethodModel[] allMethods = MethodModel.none;
+
+	public ClassModel(int id, String name, boolean listed, String qualifiedName, String simpleTypeName, String packageName,
+			boolean isInterface, boolean isAnnotationType, boolean isEnum) {
+		super(id, name, listed);
+		this.qualifiedName = qualifiedName;
+		this.simpleTypeName = simpleTypeName;
+		this.packageName = packageName;
+		this.isInterface = isInterface;
+		this.isAnnotationType = isAnnotationType;
+		this.isEnum = isEnum;
+	}
+
+	void setDeclaration(ClassModel containingClass, TypeModel[] typeParameters) {
+		checkMutable();
+		this.containingClass = containingClass;
+		this.typeParameters = typeParameters;
+	}
+
+	void setDetails(ClassModel superclass, TypeModel superclassType, ClassModel[] interfaces, TypeModel[] interfaceTypes,
+			ClassModel[] innerClasses, FieldModel[] enumConstants, FieldModel[] fields, MethodModel[] constructors, MethodModel[] methods) {
+		checkMutable();
+		this.detailed = true;
+		this.superclass = superclass;
+		this.superclassType = superclassType;
+		this.interfaces = interfaces;
+		this.interfaceTypes = interfaceTypes;
+		this.innerClasses = innerClasses;
+		this.enumConstants = enumConstants;
+		this.fields = fields;
+		this.constructors = constructors;
+		this.methods = methods;
+	}
+
+	void setAllMembers(FieldModel[] allFields, MethodModel[] allMethods) {
+		checkMutable();
+		this.allFields = allFields;
+		this.allMethods = allMethods;
+	}
+
+	public ClassModel containingClass() {
+		loadBody();
+		return containingClass;
+	}
+
+	public TypeModel[] typeParameters() {
+		loadBody();
+		return typeParameters;
+	}
+
+	public boolean detailed() {
+		loadBody();
+		return detailed;
+	}
+
+	public ClassModel superclass() {
+		loadBody();
+		return superclass;
+	}
+
+	public TypeModel superclassType() {
+		loadBody();
+		return superclassType;
+	}
+
+	public ClassModel[] interfaces() {
+		loadBody();
+		return interfaces;
+	}
+
+	public TypeModel[] interfaceTypes() {
+		loadBody();
+		return interfaceTypes;
+	}
+
+	public ClassModel[] innerClasses() {
+		loadBody();
+		return innerClasses;
+	}
+
+	public FieldModel[] enumConstants() {
+		loadBody();
+		return enumConstants;
+	}
+
+	public FieldModel[] fields() {
+		loadBody();
+		return fields;
+	}
+
+	public MethodModel[] constructors() {
+		loadBody();
+		return constructors;
+	}
+
+	public MethodModel[] methods() {
+		loadBody();
+		return methods;
+	}
+
+	public FieldModel[] allFields() {
+		loadBody();
+		return allFields;
+	}
+
+	public MethodModel[] allMethods() {
+		loadBody();
+		return allMethods;
+	}
+
+	@Override
+	public String qualifiedName() {
+		return qualifiedName;
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.xrbpowered.doclet;
+
+public class CommentModel {
+
+	public static class Token {
+		public static final Token[] none = {};
+
+		public static final int TEXT = 0;
+		public static final int CODE = 1;
+		public static final int LINK = 2;
+
+		public final int kind;
+		public final String text;
+		public final String label;
+		public final boolean plain;
+		public final ElementModel target;
+
+		public Token(int kind, String text, String label, boolean plain, ElementModel target) {
+			this.kind = kind;
+			this.text = text;
+			this.label = label;
+			this.plain = plain;
+			this.target = target;
+		}
+	}
+
+	public static class ParamComment {
+		public static final ParamComment[] none = {};
+
+		public final String name;
+		public final Token[] text;
+
+		public ParamComment(String name, Token[] text) {
+			this.name = name;
+			this.text = text;
+		}
+	}
+
+	public static class ThrowsComment {
+		public static final ThrowsComment[] none = {};
+
+		public final String exceptionName;
+		public final TypeModel exceptionType;
+		public final Token[] text;
+
+		public ThrowsComment(String exceptionName, TypeModel exceptionType, Token[] text) {
+			this.exceptionName = exceptionName;
+			this.exceptionType = exceptionType;
+			this.text = text;
+		}
+	}
+
+	public static final String[] noStrings = {};
+	public static final Token[][] noBlocks = {};
+	public static final CommentModel empty = new CommentModel("", Token.none, Token.none, false, noStrings, Token.none, noBlocks,
+			ParamComment.none, ParamComment.none, noBlocks, ThrowsComment.none);
+
+	public final String raw;
+	public final Token[] inline;
+	public final Token[] firstSentence;
+	public final boolean hasTags;
+	public final String[] since;
+	public final Token[] see;
+	public final Token[][] deprecated;
+	public final ParamComment[] params;
+	public final ParamComment[] typeParams;
+	public final Token[][] returns;
+	public final ThrowsComment[] throwsTags;
+
+	public CommentModel(String raw, Token[] inline, Token[] firstSentence, boolean hasTags, String[] since, Token[] see, Token[][] deprecated,
+			ParamComment[] params, ParamComment[] typeParams, Token[][] returns, ThrowsComment[] throwsTags) {
+		this.raw = raw;
+		this.inline = inline;
+		this.firstSentence = firstSentence;
+		this.hasTags = hasTags;
+		this.since = since;
+		this.see = see;
+		this.deprecated = deprecated;
+		this.params = params;
+		this.typeParams = typeParams;
+		this.returns = returns;
+		this.throwsTags = throwsTags;
+	}
+
+	public boolean isEmpty() {
+		return inline.length==0 && !hasTags;
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.xrbpowered.doclet;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+public class DirectorySink extends OutputSink {
+
+	public final File root;
+
+	public DirectorySink(File root) {
+		this.root = root;
+		if(!root.exists() && !root.mkdirs())
+			throw new RuntimeException(new FileNotFoundException(root.getPath()));
+	}
+
+	public File getFile(String path) {
+		return new File(root, path);
+	}
+
+	@Override
+	public void write(String path, byte[] data, int length) throws IOException {
+		File file = getFile(path);
+		File dir = file.getParentFile();
+		if(!dir.exists())
+			dir.mkdirs();
+		ByteBuffer buf = ByteBuffer.wrap(data, 0, length);
+		try(FileChannel ch = FileChannel.open(file.toPath(),
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while(buf.hasRemaining())
+				ch.write(buf);
+		}
+	}
+
+	@Override
+	public boolean exists(String path) {
+		return getFile(path).exists();
+	}
+
+	@Override
+	public boolean delete(String path) {
+		return getFile(path).delete();
+	}
+
+	@Override
+	public File getDirectory() {
+		return root;
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.xrbpowered.doclet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class DocModel {
+
+	public final List<ElementModel> elements;
+	public final List<PackageModel> packages;
+	public final List<ClassModel> classes;
+	public final PackageModel overview;
+
+	public DocModel(List<ElementModel> elements, List<PackageModel> packages, List<ClassModel> classes, PackageModel overview) {
+		this.elements = Collections.unmodifiableList(elements);
+		this.packages = Collections.unmodifiableList(packages);
+		this.classes = Collections.unmodifiableList(classes);
+		this.overview = overview;
+		for(ElementModel e : elements)
+			e.freeze();
+	}
+
+	public ElementModel get(int id) {
+		return elements.get(id);
+	}
+
+	public int size() {
+		return elements.size();
+	}
+
+	public List<String> listedNames() {
+		List<String> names = new ArrayList<>();
+		for(ElementModel e : elements) {
+			if(e.listed)
+				names.add(e.qualifiedName());
+		}
+		return names;
+	}
+
+}
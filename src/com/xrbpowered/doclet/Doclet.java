@@ -1,53 +1,187 @@
 package com.xrbpowered.doclet;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-import com.sun.javadoc.ClassDoc;
 import com.sun.javadoc.LanguageVersion;
-import com.sun.javadoc.PackageDoc;
 import com.sun.javadoc.RootDoc;
 
 public class Doclet {
 
-	public static HashSet<ClassDoc> listedClasses = new HashSet<>();
-	public static HashSet<PackageDoc> listedPackages = new HashSet<>();
-
 	public static RootDoc rootDoc;
+	private static DocModel model;
+	private static HierarchyIndex hierarchy;
 	
+	private static ExecutorService pool = null;
+	private static List<Future<?>> pages = new ArrayList<>();
+	private static int skippedPages = 0;
+	private static AtomicInteger pageCount = new AtomicInteger();
+	private static AtomicLong totalBytes = new AtomicLong();
+
 	public static boolean start(RootDoc root) {
 		rootDoc = root;
+		Stats.Timer t = Stats.start();
 		Options.loadOptions(root.options());
+		Stats.stop(t, Stats.options);
 		root.printNotice("Using XRB powered custom doclet.");
 		FileUtils.createRoot();
+		FileUtils.startCopying();
+		FileUtils.copyStyleFiles();
 		
-		for(PackageDoc pkg : root.specifiedPackages()) {
-			if(Options.isOverview(pkg))
-				continue;
-			listedPackages.add(pkg);
+		// javadoc is only queried while building the model, pages are rendered from the model alone
+		t = Stats.start();
+		DocModel model = ModelBuilder.build(root);
+		Stats.stop(t, Stats.model);
+		if(Options.saveModel) {
+			printNotice("... Saving documentation model");
+			t = Stats.start();
+			ModelFile.save(model, ModelFile.getFile());
+			Stats.stop(t, Stats.saveModel);
+		}
+		render(model);
+		return true;
+	}
+	
+	public static void render(DocModel docModel) {
+		model = docModel;
+		// the JVM may have rendered before, e.g. when embedded with a MemorySink
+		skippedPages = 0;
+		pageCount.set(0);
+		totalBytes.set(0L);
+		RenderCache.clear();
+		Fingerprint.clear();
+		PackageLink.init(model);
+		hierarchy = new HierarchyIndex(model.classes);
+		ExtFragments.collect(model);
+
+		if(Options.incremental) {
+			Stats.Timer t = Stats.start();
+			Manifest.load(model);
+			Stats.stop(t, Stats.manifest);
+		}
+		if(Options.threads>1) {
+			printNotice(String.format("Rendering pages using %d threads.", Options.threads));
+			pool = Executors.newFixedThreadPool(Options.threads);
 		}
-		for(ClassDoc cls : root.classes())
-			listedClasses.add(cls);
 
-		new PackageIndexWriter(root).createFile();
-		new ClassIndexWriter(root.classes()).createFile();
+		createFile(null, new PackageIndexWriter(model));
+		createClassIndex(model.classes);
+		SearchIndex.write(model);
+		for(ExtFragments.Fragment f : ExtFragments.fragments())
+			createFile(null, new ExtFragmentWriter(f));
 		
-		for(PackageDoc pkg : root.specifiedPackages()) {
-			if(Options.isOverview(pkg))
+		for(PackageModel pkg : model.packages) {
+			if(!pkg.listed)
 				continue;
-			root.printNotice(pkg.name());
-			new PackageDocWriter(pkg).createFile();
+			createFile(pkg.name, new PackageDocWriter(pkg));
 			FileUtils.copyDocFiles(pkg);
 		}
 		
-		for(ClassDoc cls : root.classes()) {
-			root.printNotice(cls.qualifiedName());
-			new ClassDocWriter(cls).createFile();
+		for(ClassModel cls : model.classes) {
+			createFile(cls.qualifiedName, new ClassDocWriter(cls));
 		}
-
-		FileUtils.copyStyleFiles();
-		return true;
+		waitForPages();
+		printNotice(String.format("Written %d pages, %d bytes.", pageCount.get(), totalBytes.get()));
+		if(Options.incremental) {
+			printNotice(String.format("Skipped %d unchanged pages.", skippedPages));
+			Stats.Timer t = Stats.start();
+			Manifest.save();
+			Stats.stop(t, Stats.manifest);
+		}
+		Stats.Timer t = Stats.start();
+		FileUtils.finishCopying();
+		GzipFiles.finish();
+		OutputSink.finish();
+		Stats.stop(t, Stats.finish);
+		Stats.write(model);
+		// style files are registered and timings start before render(), so these are reset when it ends
+		FileUtils.reset();
+		Stats.reset();
 	}
 	
+	private static void createClassIndex(List<ClassModel> classes) {
+		List<ClassModel> classList = ClassIndexWriter.sortClasses(classes);
+		if(Options.indexShardSize<0) {
+			createFile(null, new ClassIndexWriter(classList, null, null));
+			return;
+		}
+		List<ClassIndexWriter.Shard> shards = ClassIndexWriter.split(classList, Options.indexShardSize);
+		createFile(null, new ClassIndexWriter(classList, shards, null));
+		for(ClassIndexWriter.Shard shard : shards)
+			createFile(null, new ClassIndexWriter(classList, shards, shard));
+	}
+
+	private static void createFile(String notice, HtmlWriter writer) {
+		if(Options.incremental && Manifest.isUpToDate(writer)) {
+			skippedPages++;
+			Stats.skip(writer);
+			return;
+		}
+		if(pool==null)
+			renderPage(notice, writer);
+		else
+			pages.add(pool.submit(() -> renderPage(notice, writer)));
+	}
+
+	private static void renderPage(String notice, HtmlWriter writer) {
+		Stats.Timer t = Stats.start();
+		int bytes = writer.createFile();
+		Stats.page(writer, bytes, t);
+		pageCount.incrementAndGet();
+		totalBytes.addAndGet(bytes);
+		if(notice!=null)
+			printNotice(String.format("%s (%d bytes)", notice, bytes));
+	}
+
+	private static void waitForPages() {
+		if(pool==null)
+			return;
+		try {
+			for(Future<?> page : pages)
+				page.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch(ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+			pool = null;
+			pages.clear();
+		}
+	}
+
+	public static DocModel getModel() {
+		return model;
+	}
+
+	public static HierarchyIndex getHierarchy() {
+		return hierarchy;
+	}
+
+	public static synchronized void printNotice(String msg) {
+		if(rootDoc==null)
+			System.out.println(msg);
+		else
+			rootDoc.printNotice(msg);
+	}
+
+	public static synchronized void printWarning(String msg) {
+		if(rootDoc==null)
+			System.err.println("warning: "+msg);
+		else
+			rootDoc.printWarning(msg);
+	}
+
 	public static int optionLength(String option) {
 		return Options.optionLength(option);
 	}
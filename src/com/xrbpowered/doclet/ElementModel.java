@@ -0,0 +1,128 @@
+package com.xrbpowered.doclet;
+
+import java.lang.reflect.Modifier;
+
+public abstract class ElementModel {
+
+	// Records are filled in by the model builder through the package-private setters, which can only be used
+	// until the record is frozen. DocModel freezes all records, so the rest of the doclet only sees read-only data.
+	// Records loaded from a model file decode their body and comment on first access, and are frozen after that.
+
+	public final int id;
+	public final String name;
+	public final boolean listed;
+
+	private int modifierSpecifier = 0;
+	private String modifiers = "";
+	private boolean deprecated = false;
+	private AnnotationModel[] annotations = AnnotationModel.none;
+	private CommentModel comment = CommentModel.empty;
+
+	private boolean frozen = false;
+
+	// the model file to decode from, cleared after decoding, so that a null value also publishes the decoded fields
+	private volatile ModelFile bodySource = null;
+	private volatile ModelFile commentSource = null;
+
+	public ElementModel(int id, String name, boolean listed) {
+		this.id = id;
+		this.name = name;
+		this.listed = listed;
+	}
+
+	void freeze() {
+		if(bodySource==null && commentSource==null)
+			frozen = true;
+	}
+
+	void checkMutable() {
+		if(frozen)
+			throw new IllegalStateException("Model record is read-only: "+qualifiedName());
+	}
+
+	void setSource(ModelFile file) {
+		checkMutable();
+		bodySource = file;
+		commentSource = file;
+	}
+
+	boolean isBodyPending() {
+		return bodySource!=null;
+	}
+
+	boolean isCommentPending() {
+		return commentSource!=null;
+	}
+
+	void bodyDecoded() {
+		bodySource = null;
+		freeze();
+	}
+
+	void commentDecoded() {
+		commentSource = null;
+		freeze();
+	}
+
+	final void loadBody() {
+		ModelFile file = bodySource;
+		if(file!=null)
+			file.loadBody(this);
+	}
+
+	final void loadComment() {
+		ModelFile file = commentSource;
+		if(file!=null)
+			file.loadComment(this);
+	}
+
+	void setModifiers(int modifierSpecifier, String modifiers, boolean deprecated, AnnotationModel[] annotations) {
+		checkMutable();
+		this.modifierSpecifier = modifierSpecifier;
+		this.modifiers = modifiers;
+		this.deprecated = deprecated;
+		this.annotations = annotations;
+	}
+
+	void setComment(CommentModel comment) {
+		checkMutable();
+		this.comment = comment;
+	}
+
+	public int modifierSpecifier() {
+		loadBody();
+		return modifierSpecifier;
+	}
+
+	public String modifiers() {
+		loadBody();
+		return modifiers;
+	}
+
+	public boolean deprecated() {
+		loadBody();
+		return deprecated;
+	}
+
+	public AnnotationModel[] annotations() {
+		loadBody();
+		return annotations;
+	}
+
+	public CommentModel comment() {
+		loadComment();
+		return comment;
+	}
+
+	public boolean isStatic() {
+		return (modifierSpecifier() & Modifier.STATIC)!=0;
+	}
+
+	public abstract String qualifiedName();
+
+	@Override
+	public String toString() {
+		return qualifiedName();
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.xrbpowered.doclet;
+
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ExtFragmentWriter extends ClassDocWriter {
+
+	// Script with the summary rows of one external class, see ExtFragments.
+
+	public final ExtFragments.Fragment fragment;
+
+	public ExtFragmentWriter(ExtFragments.Fragment fragment) {
+		super(fragment.cls);
+		this.fragment = fragment;
+	}
+
+	@Override
+	public void print() {
+		TreeMap<String, String> sections = new TreeMap<>();
+		for(Map.Entry<String, List<MemberModel>> e : fragment.getSections().entrySet()) {
+			int start = out.beginCapture();
+			for(MemberModel mem : e.getValue()) {
+				out.print("<tr class=\"inherited ext hide\" data-r=\"").print(fragment.rank(mem)).print("\">");
+				if(mem instanceof MethodModel) {
+					MethodModel met = (MethodModel) mem;
+					String mods = Modifier.toString(summaryModifiers(met, fragment.forInterface) & ~Modifier.PUBLIC);
+					printMethodRow(met, mods, true, true, true);
+				}
+				else
+					printFieldRow((FieldModel) mem, true, true, false);
+			}
+			out.endCapture();
+			sections.put(e.getKey(), out.captured(start));
+			out.truncate(start);
+		}
+
+		// rows may be minified, the script around them is not
+		out.setCompact(false);
+		out.print("extRows(\"").print(fragment.key).print("\", {");
+		String sep = "\n";
+		for(Map.Entry<String, String> e : sections.entrySet()) {
+			out.print(sep).print('\"').print(e.getKey()).print("\":");
+			SearchIndex.printString(out, e.getValue());
+			sep = ",\n";
+		}
+		out.println("\n});");
+	}
+
+	@Override
+	protected PackageLink link() {
+		// rows are moved into pages in other folders, doc.js makes links relative to the root
+		return PackageLink.root();
+	}
+
+	@Override
+	public String getPagePath() {
+		return ExtFragments.dir+fragment.key+".js";
+	}
+
+	@Override
+	protected boolean fingerprint(Fingerprint fp) {
+		// rows depend on all classes that inherit them, always regenerate
+		return false;
+	}
+
+}
@@ -0,0 +1,177 @@
+package com.xrbpowered.doclet;
+
+import static com.xrbpowered.doclet.WriterUtils.*;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public abstract class ExtFragments {
+
+	// With -extfragments, members inherited from classes outside the documented set are not repeated on every page.
+	// Each external class gets one script in ext/ with its rows for all summary sections; pages only list the fragments,
+	// and the rows to hide because they are overridden. Rows are numbered in page order across all fragments.
+
+	public static final String dir = "ext/";
+
+	public static final String constants = "fc";
+	public static final String staticFields = "fs";
+	public static final String instanceFields = "fi";
+	public static final String abstractMethods = "ma";
+	public static final String instanceMethods = "mi";
+	public static final String staticMethods = "ms";
+
+	public static class Fragment {
+		public final String key;
+		public final ClassModel cls;
+		public final boolean forInterface;
+
+		private final TreeMap<String, MemberModel> members = new TreeMap<>();
+		private final HashMap<String, Integer> ranks = new HashMap<>();
+		private final TreeMap<String, List<MemberModel>> sections = new TreeMap<>();
+
+		private Fragment(String key, ClassModel cls, boolean forInterface) {
+			this.key = key;
+			this.cls = cls;
+			this.forInterface = forInterface;
+		}
+
+		public int rank(MemberModel mem) {
+			return ranks.get(memberKey(mem));
+		}
+
+		public Map<String, List<MemberModel>> getSections() {
+			return sections;
+		}
+
+		public List<MemberModel> getSection(String section) {
+			List<MemberModel> list = sections.get(section);
+			return list==null ? Collections.<MemberModel>emptyList() : list;
+		}
+	}
+
+	private static class Row {
+		public final Fragment fragment;
+		public final MemberModel member;
+
+		public Row(Fragment fragment, MemberModel member) {
+			this.fragment = fragment;
+			this.member = member;
+		}
+	}
+
+	private static TreeMap<String, Fragment> fragments = new TreeMap<>();
+	private static String digest = null;
+
+	public static boolean isEnabled() {
+		return Options.extFragments;
+	}
+
+	private static String memberKey(MemberModel mem) {
+		// a field and a method without parameters share the anchor
+		return (mem instanceof MethodModel ? "m" : "f")+mem.anchor();
+	}
+
+	public static String key(ClassModel cls, boolean forInterface) {
+		// interface methods are listed as abstract in classes, so classes and interfaces need different rows
+		return (cls.isInterface && !forInterface) ? cls.qualifiedName+"-impl" : cls.qualifiedName;
+	}
+
+	public static String section(MemberModel mem, boolean forInterface) {
+		// same filters as the summary sections in ClassDocWriter
+		if(mem instanceof MethodModel) {
+			int m = ClassDocWriter.summaryModifiers((MethodModel) mem, forInterface);
+			if((m & Modifier.STATIC)!=0)
+				return staticMethods;
+			else if((m & Modifier.ABSTRACT)!=0)
+				return abstractMethods;
+			else
+				return instanceMethods;
+		}
+		else {
+			int m = mem.modifierSpecifier();
+			if((m & Modifier.STATIC)==0)
+				return instanceFields;
+			else if((m & Modifier.FINAL)!=0)
+				return constants;
+			else
+				return staticFields;
+		}
+	}
+
+	private static void add(MemberModel mem, boolean forInterface) {
+		if(mem.containingClass.listed)
+			return;
+		String key = key(mem.containingClass, forInterface);
+		Fragment f = fragments.get(key);
+		if(f==null) {
+			f = new Fragment(key, mem.containingClass, forInterface);
+			fragments.put(key, f);
+		}
+		f.members.put(memberKey(mem), mem);
+	}
+
+	public static void collect(DocModel model) {
+		fragments.clear();
+		digest = null;
+		if(!isEnabled())
+			return;
+		for(ClassModel cls : model.classes) {
+			for(FieldModel fld : cls.allFields())
+				add(fld, cls.isInterface);
+			for(MethodModel met : cls.allMethods())
+				add(met, cls.isInterface);
+		}
+
+		// rank all rows in the order pages list them
+		ArrayList<Row> rows = new ArrayList<>();
+		for(Fragment f : fragments.values()) {
+			for(MemberModel mem : f.members.values())
+				rows.add(new Row(f, mem));
+		}
+		rows.sort((r1, r2) -> {
+			int res = memberSort.compare(r1.member, r2.member);
+			if(res==0)
+				res = r1.fragment.key.compareTo(r2.fragment.key);
+			return res;
+		});
+		Fingerprint fp = new Fingerprint();
+		for(int rank=0; rank<rows.size(); rank++) {
+			Fragment f = rows.get(rank).fragment;
+			MemberModel mem = rows.get(rank).member;
+			f.ranks.put(memberKey(mem), rank);
+			String section = section(mem, f.forInterface);
+			List<MemberModel> list = f.sections.get(section);
+			if(list==null) {
+				list = new ArrayList<>();
+				f.sections.put(section, list);
+			}
+			list.add(mem);
+			fp.add(f.key).add(memberKey(mem));
+		}
+		digest = fp.digest();
+	}
+
+	public static String digest() {
+		// pages refer to fragment rows by rank
+		return digest;
+	}
+
+	public static Fragment get(String key) {
+		return fragments.get(key);
+	}
+
+	public static Fragment get(ClassModel cls, boolean forInterface) {
+		return fragments.get(key(cls, forInterface));
+	}
+
+	public static Collection<Fragment> fragments() {
+		return fragments.values();
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.xrbpowered.doclet;
+
+public class FieldModel extends MemberModel {
+
+	public static final FieldModel[] none = {};
+
+	public final boolean enumConstant;
+
+	private TypeModel type = null;
+	private String constantValue = null;
+
+	public FieldModel(int id, String name, String qualifiedName, ClassModel containingClass, boolean enumConstant) {
+		super(id, name, qualifiedName, containingClass);
+		this.enumConstant = enumConstant;
+	}
+
+	void setType(TypeModel type, String constantValue) {
+		checkMutable();
+		this.type = type;
+		this.constantValue = constantValue;
+	}
+
+	public TypeModel type() {
+		loadBody();
+		return type;
+	}
+
+	public String constantValue() {
+		loadBody();
+		return constantValue;
+	}
+
+	@Override
+	public boolean isEnumConstant() {
+		return enumConstant;
+	}
+
+}
@@ -2,150 +2,315 @@ package com.xrbpowered.doclet;
 
 import static com.xrbpowered.doclet.Options.*;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-
-import com.sun.javadoc.PackageDoc;
-import com.sun.javadoc.SourcePosition;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class FileUtils {
 	
-	private static File root;
+	private static ExecutorService copier = null;
+	private static List<Future<?>> copies = new ArrayList<>();
+	private static AtomicInteger copiedFiles = new AtomicInteger();
+	private static AtomicInteger skippedFiles = new AtomicInteger();
+	private static AtomicInteger linkedFiles = new AtomicInteger();
+	
+	// content digest -> first copy of doc file, only accessed from the copying thread
+	private static HashMap<String, File> blobs = new HashMap<>();
 	
 	public static void createRoot() {
-		root = new File(outPath);
-		if(!root.exists() && !root.mkdirs())
-			throw new RuntimeException(new FileNotFoundException(outPath));
+		if(OutputSink.get().getDirectory()==null) {
+			if(incremental) {
+				Doclet.printWarning("Incremental mode needs a directory output, regenerating all pages.");
+				incremental = false;
+			}
+			if(dedupDocFiles) {
+				Doclet.printWarning("Linked doc files need a directory output, storing all copies.");
+				dedupDocFiles = false;
+			}
+		}
+	}
+	
+	private static File root() {
+		// output directory, or null if the output goes to an archive or elsewhere
+		return OutputSink.get().getDirectory();
+	}
+	
+	public static void startCopying() {
+		copier = Executors.newSingleThreadExecutor();
+	}
+	
+	private static void submitCopy(Runnable task) {
+		Runnable timed = () -> {
+			Stats.Timer t = Stats.start();
+			task.run();
+			Stats.stop(t, Stats.assetCopy);
+		};
+		if(copier==null)
+			timed.run();
+		else
+			copies.add(copier.submit(timed));
+	}
+	
+	public static void finishCopying() {
+		try {
+			for(Future<?> copy : copies)
+				copy.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch(ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		finally {
+			if(copier!=null)
+				copier.shutdownNow();
+			copier = null;
+			copies.clear();
+		}
+		if(linkedFiles.get()>0)
+			Doclet.printNotice(String.format("Copied %d files, linked %d duplicate doc files, skipped %d unchanged files.", copiedFiles.get(), linkedFiles.get(), skippedFiles.get()));
+		else if(skippedFiles.get()>0)
+			Doclet.printNotice(String.format("Copied %d files, skipped %d unchanged files.", copiedFiles.get(), skippedFiles.get()));
 	}
 	
-	public static void createPackageList(List<PackageDoc> pkgList) {
+	public static void createPackageList(List<PackageModel> pkgList) {
 		try {
-			File file = new File(root, "package-list");
-			PrintStream out = new PrintStream(file);
-			for(PackageDoc pkg : pkgList) {
-				out.println(pkg.name());
+			StringBuilder sb = new StringBuilder();
+			for(PackageModel pkg : pkgList) {
+				sb.append(pkg.name).append(System.lineSeparator());
 			}
-			out.close();
+			OutputSink.get().write("package-list", sb.toString().getBytes());
 		}
 		catch(IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 	
+	public static void reset() {
+		copiedFiles.set(0);
+		skippedFiles.set(0);
+		linkedFiles.set(0);
+		blobs.clear();
+		Assets.clear();
+	}
+
+	public static int getCopiedFiles() {
+		return copiedFiles.get()+linkedFiles.get();
+	}
+
+	public static int getSkippedFiles() {
+		return skippedFiles.get();
+	}
+
 	public static void copyStyleFiles() {
-		Doclet.rootDoc.printNotice("... Copying style files");
-		copyFileFallback(cssFile, defaultCSS, new File(root, "doc.css"));
-		copyFileFallback(jsFile, defaultJS, new File(root, "doc.js"));
+		Stats.Timer t = Stats.start();
+		Doclet.printNotice("... Copying style files");
+		copyFileFallback(cssFile, defaultCSS, "doc.css");
+		copyFileFallback(jsFile, defaultJS, "doc.js");
+		copyFileFallback(null, searchJS, "search.js");
+		Assets.writeManifest();
+		Stats.stop(t, Stats.assetCopy);
 	}
 	
-	private static void copyDocFiles(PackageDoc pkg, String notice, File destDir) {
-		// package must contain package-info.java or package.html in order to have source position
-		SourcePosition pos = pkg.position();
-		if(pos==null)
+	private static void copyDocFiles(PackageModel pkg, String notice, String destPath) {
+		if(pkg.docFilesPath()==null)
 			return;
-		File srcDir = new File(pos.file().getParentFile(), "doc-files");
+		File srcDir = new File(pkg.docFilesPath());
 		if(srcDir.isDirectory()) {
-			Doclet.rootDoc.printNotice(notice);
-			copyDir(srcDir, destDir);
+			Doclet.printNotice(notice);
+			submitCopy(() -> copyDir(srcDir, destPath));
 		}
 	}
 	
-	public static void copyDocFiles(PackageDoc pkg) {
-		copyDocFiles(pkg, "... Copying doc files", new File(PackageLink.getPackageDir(pkg.name()), "doc-files"));
+	public static void copyDocFiles(PackageModel pkg) {
+		copyDocFiles(pkg, "... Copying doc files", PackageLink.forPackage(pkg.name).path+"doc-files");
 	}
 
-	public static void copyOverviewDocFiles(PackageDoc pkg) {
-		copyDocFiles(pkg, "... Copying overview doc files", new File(root, "doc-files"));
+	public static void copyOverviewDocFiles(PackageModel pkg) {
+		copyDocFiles(pkg, "... Copying overview doc files", "doc-files");
 	}
 
-	private static byte[] loadBytes(InputStream s) throws IOException {
-		DataInputStream in = new DataInputStream(s);
-		byte bytes[] = new byte[in.available()];
-		in.readFully(bytes);
-		in.close();
-		return bytes;
-	}
-	
-	private static void saveBytes(OutputStream s, byte[] bytes) throws IOException {
-		DataOutputStream out = new DataOutputStream(s);
-		out.write(bytes);
-		out.close();
-	}
-	
 	public static String getContent(File file) {
 		try {
-			InputStream in = new FileInputStream(file);
-			return new String(loadBytes(in));
+			return new String(Files.readAllBytes(file.toPath()));
 		}
 		catch(IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 	
-	public static void copyResource(String classPath, File dest) {
-		try {
-			ClassLoader cl = FileUtils.class.getClassLoader();
-			InputStream in = cl.getResourceAsStream(Options.baseClassPath+"/"+classPath);
+	private static boolean isUnchanged(File dest, long size, long modified) {
+		if(modified>0 && dest.isFile() && dest.length()==size && dest.lastModified()==modified) {
+			skippedFiles.incrementAndGet();
+			return true;
+		}
+		else
+			return false;
+	}
+	
+	public static byte[] readResource(String classPath) {
+		ClassLoader cl = FileUtils.class.getClassLoader();
+		try(InputStream in = cl.getResourceAsStream(Options.baseClassPath+"/"+classPath)) {
 			if(in==null)
 				throw new FileNotFoundException(classPath);
-			OutputStream out = new FileOutputStream(dest);
-			saveBytes(out, loadBytes(in));
+			return OutputSink.readAll(in);
 		}
 		catch(IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
-	public static void copyDir(File src, File dest) {
-		if(!dest.exists())
-			dest.mkdirs();
+	private static void writeStyleFile(byte[] data, String path) {
+		try {
+			// style files are small: compare the contents to leave unchanged files untouched
+			File dest = root()==null ? null : new File(root(), path);
+			if(dest!=null && dest.isFile() && dest.length()==data.length && Arrays.equals(Files.readAllBytes(dest.toPath()), data))
+				skippedFiles.incrementAndGet();
+			else {
+				OutputSink.get().write(path, data);
+				copiedFiles.incrementAndGet();
+			}
+			GzipFiles.submit(path, data, data.length);
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static void copyDir(File src, String dest) {
+		File root = root();
+		if(root!=null) {
+			File dir = new File(root, dest);
+			if(!dir.exists())
+				dir.mkdirs();
+		}
 		File[] files = src.listFiles();
 		for(File f : files) {
 			String name = f.getName();
-			File df = new File(dest, name);
+			String path = dest+"/"+name;
 			if(f.isDirectory()) {
 				if(!name.startsWith("."))
-					copyDir(f, df);
+					copyDir(f, path);
+			}
+			else if(root==null) {
+				try {
+					OutputSink.get().write(path, Files.readAllBytes(f.toPath()));
+					copiedFiles.incrementAndGet();
+				}
+				catch(IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			else if(dedupDocFiles) {
+				copyUniqueFile(f, new File(root, path));
 			}
 			else {
-				copyFile(f, df);
+				copyFile(f, new File(root, path));
 			}
 		}
 	}
 	
 	public static void copyFile(File src, File dest) {
 		try {
-			InputStream in = new FileInputStream(src);
-			OutputStream out = new FileOutputStream(dest);
-			saveBytes(out, loadBytes(in));
+			if(isUnchanged(dest, src.length(), src.lastModified()))
+				return;
+			Files.copy(src.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+			copiedFiles.incrementAndGet();
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static void copyUniqueFile(File src, File dest) {
+		try {
+			String digest = new Fingerprint().addFile(src).digest();
+			File blob = blobs.get(digest);
+			Path link = dest.toPath();
+			if(blob==null || blob.equals(dest)) {
+				blobs.put(digest, dest);
+				if(Files.isSymbolicLink(link))
+					Files.delete(link);
+				copyFile(src, dest);
+				return;
+			}
+			Path target = blob.toPath();
+			if(Files.exists(link, LinkOption.NOFOLLOW_LINKS)) {
+				if(Files.isSameFile(link, target)) {
+					skippedFiles.incrementAndGet();
+					return;
+				}
+				Files.delete(link);
+			}
+			if(createLink(link, target))
+				linkedFiles.incrementAndGet();
+			else
+				copyFile(src, dest);
 		}
 		catch(IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 	
-	public static void copyFileFallback(String srcFilePath, String fallbackClassPath, File dest) {
+	private static boolean createLink(Path link, Path target) {
+		try {
+			Files.createLink(link, target);
+			return true;
+		}
+		catch(IOException | UnsupportedOperationException | SecurityException e) {
+			// e.g. output spans file systems: try a relative symbolic link instead
+		}
+		try {
+			Files.createSymbolicLink(link, link.getParent().relativize(target));
+			return true;
+		}
+		catch(IOException | UnsupportedOperationException | SecurityException e) {
+			return false;
+		}
+	}
+	
+	public static byte[] readFileFallback(String srcFilePath, String fallbackClassPath) {
 		if(srcFilePath!=null) {
 			if(srcFilePath.equalsIgnoreCase("none"))
-				return;
+				return null;
 			File src = new File(srcFilePath);
 			if(src.exists()) {
-				copyFile(src, dest);
-				return;
+				try {
+					return Files.readAllBytes(src.toPath());
+				}
+				catch(IOException e) {
+					throw new RuntimeException(e);
+				}
 			}
 			else
-				Doclet.rootDoc.printWarning(String.format("File not found: %s\nUsing default replacement.\n", src.getAbsolutePath()));
+				Doclet.printWarning(String.format("File not found: %s\nUsing default replacement.\n", src.getAbsolutePath()));
 		}
-		copyResource(fallbackClassPath, dest);
+		return readResource(fallbackClassPath);
+	}
+
+	public static void copyFileFallback(String srcFilePath, String fallbackClassPath, String name) {
+		// style files are read up front: with -hashassets, pages need the names before rendering starts
+		byte[] data = readFileFallback(srcFilePath, fallbackClassPath);
+		if(data==null)
+			return;
+		String path = Assets.add(name, data);
+		submitCopy(() -> writeStyleFile(data, path));
 	}
 
 }
@@ -0,0 +1,198 @@
+package com.xrbpowered.doclet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.xrbpowered.doclet.CommentModel.ParamComment;
+import com.xrbpowered.doclet.CommentModel.ThrowsComment;
+import com.xrbpowered.doclet.CommentModel.Token;
+
+public class Fingerprint {
+
+	private static ConcurrentHashMap<ClassModel, String> classDigests = new ConcurrentHashMap<>();
+
+	private final MessageDigest md;
+
+	public Fingerprint() {
+		try {
+			md = MessageDigest.getInstance("SHA-1");
+		}
+		catch(NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public Fingerprint add(String s) {
+		if(s!=null)
+			md.update(s.getBytes(StandardCharsets.UTF_8));
+		md.update((byte) 0);
+		return this;
+	}
+
+	public Fingerprint add(byte[] data) {
+		md.update(data);
+		return this;
+	}
+
+	public Fingerprint addFile(File file) throws IOException {
+		try(InputStream in = new FileInputStream(file)) {
+			byte[] buf = new byte[0x10000];
+			int n;
+			while((n = in.read(buf))>0)
+				md.update(buf, 0, n);
+		}
+		return this;
+	}
+
+	public Fingerprint add(int x) {
+		return add(Integer.toString(x));
+	}
+
+	public Fingerprint add(boolean b) {
+		return add(b ? "1" : "0");
+	}
+
+	public Fingerprint add(TypeModel type) {
+		return add(type==null ? null : type.key);
+	}
+
+	public Fingerprint add(TypeModel[] types) {
+		add(types.length);
+		for(TypeModel t : types)
+			add(t);
+		return this;
+	}
+
+	private void addLinkTargets(Token[] tags) {
+		for(Token t : tags) {
+			if(t.kind!=Token.LINK)
+				continue;
+			ElementModel target = t.target;
+			if(target instanceof MemberModel) {
+				MemberModel mem = (MemberModel) target;
+				add(mem.containingClass.qualifiedName).add(mem.name).add(mem.signature()).add(mem.anchor()).add(mem.title());
+			}
+			else if(target!=null)
+				add(target.qualifiedName());
+			else
+				add(t.text);
+		}
+	}
+
+	private void addLinkTargets(Token[][] blocks) {
+		for(Token[] tags : blocks)
+			addLinkTargets(tags);
+	}
+
+	private void addLinkTargets(ParamComment[] tags) {
+		for(ParamComment t : tags)
+			addLinkTargets(t.text);
+	}
+
+	public Fingerprint addComment(CommentModel comment) {
+		add(comment.raw);
+		addLinkTargets(comment.inline);
+		addLinkTargets(comment.see);
+		addLinkTargets(comment.deprecated);
+		addLinkTargets(comment.params);
+		addLinkTargets(comment.typeParams);
+		addLinkTargets(comment.returns);
+		for(ThrowsComment t : comment.throwsTags) {
+			add(t.exceptionType);
+			addLinkTargets(t.text);
+		}
+		return this;
+	}
+
+	private void addFirstSentence(CommentModel comment) {
+		add(comment.raw);
+		addLinkTargets(comment.firstSentence);
+	}
+
+	public Fingerprint addClassLink(ClassModel c) {
+		// what printClassLink shows, modifiers for the nested class rows
+		return add(c.qualifiedName).add(c.modifierSpecifier()).add(c.isAnnotationType).add(c.typeParameters());
+	}
+
+	private void addDeclaration(ElementModel e) {
+		add(e.name).add(e.modifierSpecifier());
+		for(AnnotationModel ann : e.annotations())
+			add(ann.key);
+		addComment(e.comment());
+	}
+
+	private void addField(FieldModel fld) {
+		addDeclaration(fld);
+		add(fld.type()).add(fld.constantValue());
+	}
+
+	private void addMethod(MethodModel met) {
+		addDeclaration(met);
+		add(met.typeParameters()).add(met.signature()).add(met.varArgs());
+		add(met.returnType());
+		for(String name : met.paramNames())
+			add(name);
+		add(met.thrownTypes());
+		if(met.constructor)
+			add(met.defaultConstructor());
+	}
+
+	private void addClass(ClassModel cls) {
+		addDeclaration(cls);
+		add(cls.qualifiedName).add(cls.isAnnotationType).add(cls.isEnum);
+		add(cls.typeParameters()).add(cls.superclassType()).add(cls.interfaceTypes());
+		for(ClassModel c : cls.innerClasses()) {
+			addClassLink(c);
+			addFirstSentence(c.comment());
+		}
+		for(FieldModel fld : cls.enumConstants())
+			addField(fld);
+		for(FieldModel fld : cls.fields())
+			addField(fld);
+		for(MethodModel con : cls.constructors())
+			addMethod(con);
+		for(MethodModel met : cls.methods())
+			addMethod(met);
+	}
+
+	public Fingerprint addClassSummary(ClassModel cls) {
+		addClassLink(cls).add(cls.deprecated());
+		addFirstSentence(cls.comment());
+		return this;
+	}
+
+	public Fingerprint addPackageSummary(PackageModel pkg) {
+		add(pkg.name);
+		addFirstSentence(pkg.comment());
+		return this;
+	}
+
+	public String digest() {
+		StringBuilder sb = new StringBuilder();
+		for(byte b : md.digest())
+			sb.append(String.format("%02x", b & 0xff));
+		return sb.toString();
+	}
+
+	public static void clear() {
+		classDigests.clear();
+	}
+
+	public static String classDigest(ClassModel cls) {
+		String digest = classDigests.get(cls);
+		if(digest==null) {
+			Fingerprint fp = new Fingerprint();
+			fp.addClass(cls);
+			digest = fp.digest();
+			classDigests.put(cls, digest);
+		}
+		return digest;
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.xrbpowered.doclet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+public abstract class GzipFiles {
+
+	public static final String extension = ".gz";
+
+	private static ThreadPoolExecutor pool = null;
+	private static Queue<Future<?>> tasks = new ConcurrentLinkedQueue<>();
+	private static AtomicInteger compressedFiles = new AtomicInteger();
+	private static AtomicInteger skippedFiles = new AtomicInteger();
+	private static AtomicLong savedBytes = new AtomicLong();
+
+	public static boolean isEnabled() {
+		return Options.gzipMinSize>=0;
+	}
+
+	private static synchronized ThreadPoolExecutor pool() {
+		if(pool==null) {
+			// bounded queue: when compression falls behind, rendering threads compress their own pages
+			int n = Math.max(1, Options.threads);
+			pool = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(n*4),
+					new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+		return pool;
+	}
+
+	public static void submit(String path, byte[] data, int length) {
+		if(!isEnabled()) {
+			// gzip_static would keep serving a .gz from an earlier run with -gzip
+			remove(path);
+			return;
+		}
+		byte[] copy = Arrays.copyOf(data, length);
+		tasks.add(pool().submit(() -> compress(path, copy)));
+	}
+
+	private static void compress(String path, byte[] data) {
+		Stats.Timer t = Stats.start();
+		try {
+			OutputSink sink = OutputSink.get();
+			String gz = path+extension;
+			if(data.length>=Options.gzipMinSize) {
+				ByteArrayOutputStream buf = new ByteArrayOutputStream(data.length/4+64);
+				try(GZIPOutputStream out = new GZIPOutputStream(buf) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+					out.write(data);
+				}
+				if(buf.size()<data.length) {
+					sink.write(gz, buf.toByteArray());
+					compressedFiles.incrementAndGet();
+					savedBytes.addAndGet(data.length-buf.size());
+					return;
+				}
+			}
+			// small or incompressible: do not leave a stale copy from an earlier run
+			remove(path);
+			skippedFiles.incrementAndGet();
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+		finally {
+			Stats.stop(t, Stats.gzip);
+		}
+	}
+
+	public static void remove(String path) {
+		OutputSink sink = OutputSink.get();
+		String gz = path+extension;
+		if(sink.exists(gz))
+			sink.delete(gz);
+	}
+
+	public static void finish() {
+		if(pool==null)
+			return;
+		try {
+			for(Future<?> task : tasks)
+				task.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch(ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+			pool = null;
+			tasks.clear();
+		}
+		Doclet.printNotice(String.format("Compressed %d files (%d bytes saved), skipped %d files.",
+				compressedFiles.get(), savedBytes.get(), skippedFiles.get()));
+		compressedFiles.set(0);
+		skippedFiles.set(0);
+		savedBytes.set(0L);
+	}
+
+}
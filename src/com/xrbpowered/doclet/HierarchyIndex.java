@@ -0,0 +1,62 @@
+package com.xrbpowered.doclet;
+
+import static com.xrbpowered.doclet.WriterUtils.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+public class HierarchyIndex {
+
+	private final HashMap<ClassModel, List<ClassModel>> subclasses = new HashMap<>();
+	private final HashMap<ClassModel, List<ClassModel>> subinterfaces = new HashMap<>();
+	private final HashMap<ClassModel, List<ClassModel>> implementing = new HashMap<>();
+
+	public HierarchyIndex(List<ClassModel> classes) {
+		for(ClassModel c : classes) {
+			if(c.superclass()!=null)
+				add(subclasses, c.superclass(), c);
+			for(ClassModel i : c.interfaces())
+				add(c.isInterface ? subinterfaces : implementing, i, c);
+		}
+		seal(subclasses);
+		seal(subinterfaces);
+		seal(implementing);
+	}
+
+	private static void add(HashMap<ClassModel, List<ClassModel>> map, ClassModel sup, ClassModel c) {
+		List<ClassModel> list = map.get(sup);
+		if(list==null) {
+			list = new ArrayList<>();
+			map.put(sup, list);
+		}
+		list.add(c);
+	}
+
+	private static void seal(HashMap<ClassModel, List<ClassModel>> map) {
+		for(ClassModel sup : map.keySet()) {
+			List<ClassModel> list = map.get(sup);
+			list.sort(classSort);
+			map.put(sup, Collections.unmodifiableList(list));
+		}
+	}
+
+	private static List<ClassModel> get(HashMap<ClassModel, List<ClassModel>> map, ClassModel sup) {
+		List<ClassModel> list = map.get(sup);
+		return list==null ? Collections.<ClassModel>emptyList() : list;
+	}
+
+	public List<ClassModel> getSubclasses(ClassModel cls) {
+		return get(subclasses, cls);
+	}
+
+	public List<ClassModel> getSubinterfaces(ClassModel cls) {
+		return get(subinterfaces, cls);
+	}
+
+	public List<ClassModel> getImplementing(ClassModel cls) {
+		return get(implementing, cls);
+	}
+
+}
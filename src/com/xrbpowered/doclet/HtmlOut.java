@@ -0,0 +1,398 @@
+package com.xrbpowered.doclet;
+
+import java.util.Arrays;
+
+public class HtmlOut {
+
+	private final StringBuilder buf;
+	private int[] captures = new int[8];
+	private int captureDepth = 0;
+
+	// compact mode: markup is minified as it is appended, see append()
+	private static final String[] blockTags = {
+		"html", "head", "body", "title", "meta", "link", "script", "div", "p", "pre", "blockquote", "hr", "br",
+		"h1", "h2", "h3", "h4", "h5", "h6", "table", "tr", "td", "th", "ul", "ol", "li", "dl", "dt", "dd", "button", "!doctype"
+	};
+	private static final String[] optionalEndTags = {"/td", "/tr", "/th"};
+
+	private static final int text = 0;
+	private static final int tagName = 1;
+	private static final int inTag = 2;
+	private static final int quoted = 3;
+	private static final int comment = 4;
+
+	private boolean compact = false;
+	private int state = text;
+	private char pendingSpace = 0;
+	private int pendingPos = -1;
+	private int tagStart = 0;
+	private final StringBuilder tag = new StringBuilder();
+	private boolean tagBlock = false;
+	private boolean afterBlockTag = true;
+	private int preDepth = 0;
+	private char quote = 0;
+	private int quoteStart = 0;
+
+	public HtmlOut() {
+		this(0x10000);
+	}
+
+	public HtmlOut(int capacity) {
+		buf = new StringBuilder(capacity);
+	}
+
+	public void setCompact(boolean compact) {
+		this.compact = compact;
+	}
+
+	public boolean isCompact() {
+		return compact;
+	}
+
+	private static boolean contains(String[] list, StringBuilder name, int start) {
+		int n = name.length()-start;
+		for(String s : list) {
+			if(s.length()==n && name.indexOf(s, start)==start)
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean isSafeValue(CharSequence s, int start, int end) {
+		if(start==end)
+			return false;
+		for(int i=start; i<end; i++) {
+			char c = s.charAt(i);
+			if(!(c>='a' && c<='z' || c>='A' && c<='Z' || c>='0' && c<='9' || c=='-' || c=='_' || c=='.' || c=='#'))
+				return false;
+		}
+		return true;
+	}
+
+	private void flushSpace() {
+		if(pendingSpace!=0 && !afterBlockTag)
+			buf.append(pendingSpace);
+		pendingSpace = 0;
+	}
+
+	private void endTagName() {
+		// the whitespace before a tag is only kept between inline elements
+		if(pendingSpace!=0) {
+			if(!tagBlock && !afterBlockTag)
+				buf.insert(pendingPos, pendingSpace);
+			pendingSpace = 0;
+		}
+		if("pre".contentEquals(tag))
+			preDepth++;
+		else if("/pre".contentEquals(tag))
+			preDepth = Math.max(0, preDepth-1);
+	}
+
+	private void endTag() {
+		afterBlockTag = tagBlock;
+		if(contains(optionalEndTags, tag, 0))
+			buf.setLength(tagStart);
+	}
+
+	private void appendInTag(char c) {
+		if(c=='"' || c=='\'') {
+			quote = c;
+			quoteStart = buf.length();
+			state = quoted;
+		}
+		else if(c=='>') {
+			state = text;
+			buf.append(c);
+			endTag();
+			return;
+		}
+		buf.append(c);
+	}
+
+	private void append(char c) {
+		switch(state) {
+			case text:
+				if(preDepth==0 && (c==' ' || c=='\n' || c=='\t' || c=='\r')) {
+					// collapse white space runs to a single character
+					pendingSpace = (pendingSpace=='\n' || c=='\n') ? '\n' : ' ';
+					return;
+				}
+				if(c=='<') {
+					pendingPos = buf.length();
+					tagStart = pendingPos;
+					tag.setLength(0);
+					state = tagName;
+					buf.append(c);
+					return;
+				}
+				flushSpace();
+				afterBlockTag = false;
+				buf.append(c);
+				return;
+			case tagName:
+				if(c=='-' && tag.length()==1 && tag.charAt(0)=='!') {
+					// HTML comment from a doc comment: copy as is
+					state = comment;
+					buf.append(c);
+					return;
+				}
+				if(c>='a' && c<='z' || c>='A' && c<='Z' || c>='0' && c<='9' || tag.length()==0 && (c=='/' || c=='!')) {
+					tag.append(Character.toLowerCase(c));
+					buf.append(c);
+					return;
+				}
+				if(tag.length()==0) {
+					// not a tag, e.g. "a < b" in a comment
+					state = text;
+					buf.setLength(pendingPos);
+					flushSpace();
+					afterBlockTag = false;
+					buf.append('<');
+					append(c);
+					return;
+				}
+				tagBlock = contains(blockTags, tag, tag.charAt(0)=='/' ? 1 : 0);
+				endTagName();
+				state = inTag;
+				appendInTag(c);
+				return;
+			case inTag:
+				appendInTag(c);
+				return;
+			case quoted:
+				if(c==quote) {
+					state = inTag;
+					if(isSafeValue(buf, quoteStart+1, buf.length())) {
+						buf.deleteCharAt(quoteStart);
+						return;
+					}
+				}
+				buf.append(c);
+				return;
+			case comment:
+				buf.append(c);
+				if(c=='>' && buf.length()>=tagStart+7 && buf.charAt(buf.length()-2)=='-' && buf.charAt(buf.length()-3)=='-') {
+					state = text;
+					afterBlockTag = false;
+				}
+				return;
+		}
+	}
+
+	private void append(CharSequence s, int start, int end) {
+		if(compact) {
+			for(int i=start; i<end; i++)
+				append(s.charAt(i));
+		}
+		else
+			buf.append(s, start, end);
+	}
+
+	private void append(CharSequence s) {
+		append(s, 0, s.length());
+	}
+
+	public HtmlOut print(String s) {
+		append(s);
+		return this;
+	}
+
+	public HtmlOut print(CharSequence s, int start, int end) {
+		append(s, start, end);
+		return this;
+	}
+
+	public HtmlOut print(char c) {
+		if(compact)
+			append(c);
+		else
+			buf.append(c);
+		return this;
+	}
+
+	public HtmlOut print(int x) {
+		append(Integer.toString(x));
+		return this;
+	}
+
+	public HtmlOut println() {
+		return print('\n');
+	}
+
+	public HtmlOut println(String s) {
+		return print(s).print('\n');
+	}
+
+	public HtmlOut printEscaped(CharSequence s) {
+		int n = s.length();
+		for(int i=0; i<n; i++) {
+			char c = s.charAt(i);
+			switch(c) {
+				case '&':
+					print("&amp;");
+					break;
+				case '<':
+					print("&lt;");
+					break;
+				case '>':
+					print("&gt;");
+					break;
+				default:
+					print(c);
+			}
+		}
+		return this;
+	}
+
+	public HtmlOut printBreakAfter(CharSequence s, char sep) {
+		int n = s.length();
+		for(int i=0; i<n; i++) {
+			char c = s.charAt(i);
+			print(c);
+			if(c==sep)
+				print("<wbr/>");
+		}
+		return this;
+	}
+
+	public HtmlOut tag(String name) {
+		return print('<').print(name).print('>');
+	}
+
+	public HtmlOut endTag(String name) {
+		return print("</").print(name).print('>');
+	}
+
+	public HtmlOut openTag(String name) {
+		return print('<').print(name);
+	}
+
+	public HtmlOut closeTag() {
+		return print('>');
+	}
+
+	public HtmlOut startAttr(String name) {
+		return print(' ').print(name).print("=\"");
+	}
+
+	public HtmlOut endAttr() {
+		return print('"');
+	}
+
+	public HtmlOut attr(String name, String value) {
+		return startAttr(name).print(value).endAttr();
+	}
+
+	public HtmlOut titleAttr(String title, String label, boolean linked) {
+		// in compact mode, titles are dropped from links with a target and where they repeat the label
+		if(title==null || compact && (linked || title.equals(label)))
+			return this;
+		return attr("title", title);
+	}
+
+	public HtmlOut link(String href, String title, String label) {
+		return openTag("a").attr("href", href).titleAttr(title, label, true).closeTag().print(label).endTag("a");
+	}
+
+	public HtmlOut externLink(String title, String label) {
+		openTag("a").attr("class", "extern");
+		return titleAttr(title, label, false).closeTag().print(label).endTag("a");
+	}
+
+	private void flushCapture() {
+		// keep captured HTML independent of what comes before and after it
+		if(pendingSpace!=0 && state==text) {
+			buf.append(pendingSpace);
+			pendingSpace = 0;
+		}
+	}
+
+	public int beginCapture() {
+		flushCapture();
+		if(captureDepth==captures.length)
+			captures = Arrays.copyOf(captures, captureDepth*2);
+		int start = buf.length();
+		captures[captureDepth++] = start;
+		return start;
+	}
+
+	public int endCapture() {
+		if(captureDepth==0)
+			throw new IllegalStateException("No capture to end");
+		flushCapture();
+		return captures[--captureDepth];
+	}
+
+	public int captureLength(int start) {
+		return buf.length()-start;
+	}
+
+	public String captured(int start) {
+		return buf.substring(start);
+	}
+
+	public String fragment(Runnable render) {
+		// compact mode: white space and block context around the fragment are held back while it is rendered,
+		// so the result is the same wherever it was first made and can be printed anywhere
+		int start = buf.length();
+		int outerState = state;
+		char outerSpace = pendingSpace;
+		boolean outerBlock = afterBlockTag;
+		int outerPre = preDepth;
+		if(compact) {
+			pendingSpace = 0;
+			afterBlockTag = false;
+			preDepth = 0;
+		}
+		render.run();
+		if(compact && state==text && pendingSpace!=0)
+			buf.append(pendingSpace);
+		String html = buf.substring(start);
+		buf.setLength(start);
+		state = outerState;
+		pendingSpace = outerSpace;
+		afterBlockTag = outerBlock;
+		preDepth = outerPre;
+		return html;
+	}
+
+	public HtmlOut insert(int pos, String s) {
+		if(compact) {
+			HtmlOut ins = new HtmlOut(s.length());
+			ins.setCompact(true);
+			s = ins.print(s).toString();
+		}
+		buf.insert(pos, s);
+		return this;
+	}
+
+	public void truncate(int length) {
+		buf.setLength(length);
+		state = text;
+		pendingSpace = 0;
+	}
+
+	public int length() {
+		return buf.length();
+	}
+
+	public void clear() {
+		buf.setLength(0);
+		captureDepth = 0;
+		compact = false;
+		state = text;
+		pendingSpace = 0;
+		afterBlockTag = true;
+		preDepth = 0;
+	}
+
+	public StringBuilder buffer() {
+		return buf;
+	}
+
+	@Override
+	public String toString() {
+		return buf.toString();
+	}
+
+}
@@ -1,68 +1,33 @@
 package com.xrbpowered.doclet;
 
-import static com.xrbpowered.doclet.WriterUtils.*;
-
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import com.sun.javadoc.ClassDoc;
-import com.sun.javadoc.Doc;
-import com.sun.javadoc.ExecutableMemberDoc;
-import com.sun.javadoc.MemberDoc;
-import com.sun.javadoc.PackageDoc;
-import com.sun.javadoc.ParameterizedType;
-import com.sun.javadoc.SeeTag;
-import com.sun.javadoc.Tag;
-import com.sun.javadoc.Type;
-import com.sun.javadoc.TypeVariable;
-import com.sun.javadoc.WildcardType;
+import com.xrbpowered.doclet.CommentModel.Token;
 
 public abstract class HtmlWriter {
 
-	public PrintStream out;
-	private ByteArrayOutputStream bytes = null;
+	public HtmlOut out;
 	
 	public abstract void print();
-	protected abstract Doc doc();
+	protected abstract ElementModel doc();
 	protected abstract String getFilename();
 
-	protected PrintStream beginTmpOut() {
-		bytes = new ByteArrayOutputStream();
-		PrintStream old = out;
-		out = new PrintStream(bytes);
-		return old;
-	}
-	
-	protected String endTmpOut(PrintStream old) {
-		String s;
-		try {
-			s = bytes.toString("UTF-8");
-		} catch(UnsupportedEncodingException e) {
-			s = "";
-		}
-		out.close();
-		out = old;
-		return s;
-	}
-	
 	protected void printPageStart(String title, String... navLinks) {
 		String rootLink = link().rootLink();
 		
 		// page header
-		out.printf("<!DOCTYPE html>\n<html>\n<head>\n<title>%s</title>\n", title);
+		out.print("<!DOCTYPE html>\n<html>\n<head>\n<title>").print(title).println("</title>");
 		if(Options.date)
-			out.printf("<meta name=\"date\" content=\"%s\">\n", currentDate());
+			out.print("<meta name=\"date\" content=\"").print(currentDate()).println("\">");
 		out.println("<meta charset=\"UTF-8\" />");
 		out.println("<meta name=\"viewport\" content=\"width=device-width; initial-scale=1.0; maximum-scale=1.0; user-scalable=0\" />");
-		out.printf("<link rel=\"stylesheet\" href=\"%sdoc.css\" />\n", rootLink);
-		out.printf("<script src=\"%sdoc.js\"></script>\n", rootLink);
+		out.print("<link rel=\"stylesheet\" href=\"").print(rootLink).print(Assets.path("doc.css")).println("\" />");
+		out.print("<script src=\"").print(rootLink).print(Assets.path("doc.js")).print('"');
+		if(Options.hashAssets)
+			out.attr("data-search", Assets.path("search.js"));
+		out.println("></script>");
 		out.println("</head>");
 		
 		// start page
@@ -71,7 +36,11 @@ public abstract class HtmlWriter {
 		out.println("<div class=\"body\"><div class=\"page\">");
 		
 		// nav bar
-		out.printf("<div class=\"nav\">\n<a href=\"%sindex.html\">%s</a>\n", rootLink, Options.docTitle);
+		out.println("<div class=\"nav\">");
+		out.print("<div class=\"search\"><input id=\"search\" type=\"search\" placeholder=\"Search\" autocomplete=\"off\"");
+		out.print(" onfocus=\"searchInput(this)\" oninput=\"searchInput(this)\" onkeydown=\"searchKey(event)\" onblur=\"hideSearchResults()\" />");
+		out.println("<div id=\"searchResults\"></div></div>");
+		out.print("<a href=\"").print(rootLink).print("index.html\">").print(Options.docTitle).println("</a>");
 		boolean hasLinks = (navLinks!=null && navLinks.length>0);
 		if(hasLinks) {
 			for(String link : navLinks) {
@@ -86,7 +55,7 @@ public abstract class HtmlWriter {
 		out.println("</div>");
 		
 		out.print(smallerTitle() ? "<h1 class=\"smaller\">" : "<h1>");
-		out.printf("<a class=\"toplink\" href=\"%s.html\">%s</a></h1>", getFilename(), title.replaceAll("\\.", ".<wbr/>"));
+		out.print("<a class=\"toplink\" href=\"").print(getFilename()).print(".html\">").printBreakAfter(title, '.').print("</a></h1>");
 	}
 	
 	protected void printPageEnd() {
@@ -105,15 +74,22 @@ public abstract class HtmlWriter {
 		return PackageLink.forPackage(getPackageName());
 	}
 
-	public void createFile() {
+	public String getPagePath() {
+		return PackageLink.root().relativeLink(getPackageName())+getFilename()+".html";
+	}
+	
+	protected boolean fingerprint(Fingerprint fp) {
+		return false;
+	}
+
+	public int createFile() {
 		try {
-			File dir = PackageLink.getPackageDir(getPackageName());
-			if(!dir.exists())
-				dir.mkdirs();
-			File file = new File(dir, getFilename()+".html");
-			out = new PrintStream(file);
+			PageOutput page = PageOutput.local();
+			out = page.begin();
+			out.setCompact(Options.compact);
 			print();
-			out.close();
+			out = null;
+			return page.write(getPagePath());
 		}
 		catch(IOException e) {
 			throw new RuntimeException(e);
@@ -124,245 +100,296 @@ public abstract class HtmlWriter {
 		out.println("<p class=\"overrides\">Nothing to show.</p>");
 	}
 	
-	public void printSince(Doc doc) {
-		for(Tag t : doc.tags("@since")) {
-			out.printf("<p class=\"since\">Since: %s</p>\n", t.text());
+	public void printSince(ElementModel doc) {
+		for(String since : doc.comment().since) {
+			out.print("<p class=\"since\">Since: ").print(since).println("</p>");
 		}
 	}
 	
-	public void printSeeTags(Doc doc) {
-		if(doc.seeTags().length>0) {
+	public void printSeeTags(ElementModel doc) {
+		if(doc.comment().see.length>0) {
 			out.print("<h5>See also</h5>\n<p class=\"ind\">");
 			boolean first = true;
-			for(SeeTag t : doc.seeTags()) {
+			for(Token t : doc.comment().see) {
 				if(!first) out.print(", ");
-				out.print(tagLink(t));
+				printTagLink(t);
 				first = false;
 			}
 			out.println("</p>");
 		}
 	}
 
-	public String packageLink(PackageDoc pkg) {
-		return packageLink(pkg, null);
+	public void printPackageLink(PackageModel pkg) {
+		printPackageLink(pkg, null);
 	}
 
-	public String packageLink(PackageDoc pkg, String label) {
+	public void printPackageLink(PackageModel pkg, String label) {
 		if(label==null || label.isEmpty())
-			label = pkg.name();
-		if(Doclet.listedPackages.contains(pkg))
-			return String.format("<a href=\"%s\" title=\"%s\">%s</a>",
-					link().relativeLink(pkg.name()), pkg.name(), pkg.name());
+			label = pkg.name;
+		if(pkg.listed)
+			out.link(link().relativeLink(pkg.name), pkg.name, pkg.name);
 		else
-			return String.format("<a class=\"extern\" title=\"%s\">%s</a>", pkg.name(), pkg.name());
+			out.externLink(pkg.name, pkg.name);
 	}
 
-	public String classLink(ClassDoc cls) {
-		return classLink(cls, true, null);
+	public void printClassLink(ClassModel cls) {
+		printClassLink(cls, true, null);
 	}
 
-	public String classLink(ClassDoc cls, String label) {
-		return classLink(cls, true, label);
+	public void printClassLink(ClassModel cls, String label) {
+		printClassLink(cls, true, label);
 	}
 
-	public String classLink(ClassDoc cls, boolean params, String label) {
-		String name = cls.name();
-		if(cls.isAnnotationType())
+	public void printClassLink(ClassModel cls, boolean params, String label) {
+		String name = cls.name;
+		if(cls.isAnnotationType)
 			name = "@"+name;
 		if(label==null || label.isEmpty())
 			label = name;
-		String pstr = params ? typeParamsString(cls.typeParameters(), true) : "";
-		if(Doclet.listedClasses.contains(cls))
-			return String.format("<a href=\"%s\" title=\"%s\">%s</a>%s",
-					link().relativeLink(cls), cls.qualifiedName(), name, pstr);
+		if(cls.listed)
+			out.link(link().relativeLink(cls), cls.qualifiedName, name);
 		else
-			return String.format("<a class=\"extern\" title=\"%s\">%s</a>%s", cls.qualifiedName(), name, pstr);
+			out.externLink(cls.qualifiedName, name);
+		if(params)
+			printTypeParams(cls.typeParameters(), true);
 	}
 
-	public String memberLink(MemberDoc mem) {
-		return memberLink(mem, null);
+	public void printMemberLink(MemberModel mem) {
+		printMemberLink(mem, null);
 	}
 
-	public String memberLink(MemberDoc mem, String label) {
-		ClassDoc cls = mem.containingClass();
+	public void printMemberLink(MemberModel mem, String label) {
+		ClassModel cls = mem.containingClass;
 		boolean sameClass = doc()==cls || mem.isEnumConstant();
 		
-		String title = mem.qualifiedName();
-		String name = sameClass ? mem.name() : String.format("%s.%s", cls.name(), mem.name());
-		if(mem instanceof ExecutableMemberDoc) {
-			ExecutableMemberDoc met = (ExecutableMemberDoc) mem;
-			title += met.signature();
-			name += met.flatSignature();
+		if(cls.listed) {
+			out.openTag("a").startAttr("href");
+			if(!sameClass)
+				out.print(link().relativeLink(cls));
+			out.print('#').print(mem.anchor()).endAttr();
 		}
-		if(label==null || label.isEmpty())
-			label = name;
+		else
+			out.openTag("a").attr("class", "extern");
+		
+		out.titleAttr(mem.title(), null, cls.listed).closeTag();
 		
-		if(Doclet.listedClasses.contains(cls)) {
-			return String.format("<a href=\"%s#%s\" title=\"%s\">%s</a>",
-					sameClass ? "" : link().relativeLink(cls), memberAnchor(mem), title, label);
+		if(label==null || label.isEmpty()) {
+			if(!sameClass)
+				out.print(cls.name).print('.');
+			out.print(mem.name).print(mem.flatSignature());
 		}
 		else
-			return String.format("<a class=\"extern\" title=\"%s\">%s</a>", title, label);
+			out.print(label);
+		out.endTag("a");
 	}
 
-	public String typeString(Type type) {
-		return typeString(type, false, true);
+	public void printType(TypeModel type) {
+		printType(type, false, true);
 	}
 
-	private void appendTypeVarBounds(StringBuilder sb, String keyword, Type[] bounds) {
-		if(bounds.length>0) {
-			sb.append(" ");
-			sb.append(keyword);
-			sb.append(" ");
-			for(int i=0; i<bounds.length; i++) {
-				if(i>0) sb.append(" & ");
-				sb.append(typeString(bounds[i], false, true));
-			}
-		}
+	public void printType(TypeModel type, boolean isVarArg) {
+		printType(type, isVarArg, true);
 	}
 	
-	public String typeString(Type type, boolean isVarArg) {
-		return typeString(type, isVarArg, true);
-	}
-	
-	public String typeString(Type type, boolean isVarArg, boolean compact) {
+	public void printType(TypeModel type, boolean isVarArg, boolean compact) {
 		// Some methods can return null type, which should be handled outside this method.
 		// Checking here only for safety.
 		if(type==null)
-			return "";
+			return;
 		
-		StringBuilder sb = new StringBuilder(); 
-		WildcardType wt = type.asWildcardType();
-		if(wt!=null) {
-			sb.append(type.typeName());
-			appendTypeVarBounds(sb, "extends", wt.extendsBounds());
-			appendTypeVarBounds(sb, "super", wt.superBounds());
-			return sb.toString();
+		// rendered HTML depends on the type, the flags and the current package (relative links);
+		// non-compact type variables have their bounds in the type key
+		if(!compact && type.kind!=TypeModel.TYPEVAR) {
+			renderType(type, isVarArg, compact);
+			return;
 		}
-		TypeVariable tv = type.asTypeVariable();
-		if(tv!=null) {
-			String n = type.typeName();
-			sb.append(n);
-			if(!compact)
-				appendTypeVarBounds(sb, "extends", tv.bounds());
-			return sb.toString();
+		StringBuilder key = new StringBuilder();
+		key.append(link().path).append('\n').append(isVarArg ? 'v' : '-').append(compact ? 'c' : '-').append(type.key);
+		printCached(key.toString(), () -> renderType(type, isVarArg, compact));
+	}
+	
+	protected void printCached(String key, Runnable render) {
+		// hits and misses print the same way, so pages do not depend on which one filled the cache
+		key = (out.isCompact() ? "m\n" : "-\n")+key;
+		String html = RenderCache.get(key);
+		if(html==null) {
+			html = out.fragment(render);
+			RenderCache.put(key, html);
 		}
-		
-		if(type.isPrimitive())
-			sb.append(type.typeName());
-		else {
-			ClassDoc cls = type.asClassDoc();
-			if(cls==null)
-				sb.append(type.simpleTypeName());
-			else
-				sb.append(classLink(cls, false, null));
+		out.print(html);
+	}
+
+	private void renderTypeVarBounds(String keyword, TypeModel[] bounds) {
+		if(bounds.length>0) {
+			out.print(' ');
+			out.print(keyword);
+			out.print(' ');
+			for(int i=0; i<bounds.length; i++) {
+				if(i>0) out.print(" & ");
+				renderType(bounds[i], false, true);
+			}
+		}
+	}
+	
+	private void renderType(TypeModel type, boolean isVarArg, boolean compact) {
+		switch(type.kind) {
+			case TypeModel.WILDCARD:
+				out.print(type.name);
+				renderTypeVarBounds("extends", type.bounds);
+				renderTypeVarBounds("super", type.superBounds);
+				return;
+			case TypeModel.TYPEVAR:
+				out.print(type.name);
+				if(!compact)
+					renderTypeVarBounds("extends", type.bounds);
+				return;
+			case TypeModel.PRIMITIVE:
+				out.print(type.name);
+				break;
+			default:
+				if(type.cls==null)
+					out.print(type.name);
+				else
+					printClassLink(type.cls, false, null);
 		}
 		
-		ParameterizedType ptype = type.asParameterizedType();
-		if(ptype!=null)
-			sb.append(typeParamsString(ptype.typeArguments(), compact));
+		renderTypeParams(type.arguments, compact);
 		
-		if(isVarArg && !type.dimension().isEmpty())
-			sb.append("...");
+		if(isVarArg && !type.dimension.isEmpty())
+			out.print("...");
 		else
-			sb.append(type.dimension());
-		
-		return sb.toString();
+			out.print(type.dimension);
+	}
+
+	private void renderTypeParams(TypeModel[] tpars, boolean compact) {
+		if(tpars!=null && tpars.length>0) {
+			out.print("&lt;");
+			for(int i=0; i<tpars.length; i++) {
+				if(i>0) out.print(", ");
+				renderType(tpars[i], false, compact);
+			}
+			out.print("&gt;");
+		}
 	}
 
-	public String typeParamsString(Type[] tpars) {
-		return typeParamsString(tpars, false);
+	public void printTypeParams(TypeModel[] tpars) {
+		printTypeParams(tpars, false);
 	}
 
-	public String typeParamsString(Type[] tpars, boolean compact) {
+	public void printTypeParams(TypeModel[] tpars, boolean compact) {
 		if(tpars!=null && tpars.length>0) {
-			StringBuilder sb = new StringBuilder();
-			sb.append("&lt;");
+			out.print("&lt;");
 			for(int i=0; i<tpars.length; i++) {
-				if(i>0) sb.append(", ");
-				sb.append(typeString(tpars[i], false, compact));
+				if(i>0) out.print(", ");
+				printType(tpars[i], false, compact);
 			}
-			sb.append("&gt;");
-			return sb.toString();
+			out.print("&gt;");
 		}
-		else
-			return "";
 	}
 	
-	public String tagLink(SeeTag see) {
-		String codeFmt = see.name().equals("@linkplain") ? "%s" : "<code>%s</code>";
-		if(see.referencedMember()!=null) {
-			return String.format(codeFmt, memberLink(see.referencedMember(), see.label()));
-		}
-		else {
-			ClassDoc c = see.referencedClass();
-			if(c!=null)
-				return String.format(codeFmt, classLink(c, true, see.label()));
-			else {
-				PackageDoc pkg = see.referencedPackage();
-				if(pkg!=null)
-					return String.format(codeFmt, packageLink(pkg, see.label()));
-				else
-					return see.text();
-			}
+	public void printTagLink(Token see) {
+		ElementModel target = see.target;
+		if(target==null) {
+			out.print(see.text);
+			return;
 		}
+		if(!see.plain)
+			out.print("<code>");
+		if(target instanceof MemberModel)
+			printMemberLink((MemberModel) target, see.label);
+		else if(target instanceof ClassModel)
+			printClassLink((ClassModel) target, true, see.label);
+		else
+			printPackageLink((PackageModel) target, see.label);
+		if(!see.plain)
+			out.print("</code>");
 	}
 
-	private static final Pattern blockTags = Pattern.compile("(p)|(h\\d)|(ul)|(ol)|(dl)|(hr)|(pre)|(blockquote)|(table)|(div)", Pattern.CASE_INSENSITIVE);
-	private static final Pattern scriptTag = Pattern.compile("script", Pattern.CASE_INSENSITIVE);
-	private static final Pattern scriptStrip = Pattern.compile("\\<script.*?\\</script.*?\\>", Pattern.CASE_INSENSITIVE+Pattern.MULTILINE+Pattern.DOTALL);
+	private static final String[] blockTags = {"p", "ul", "ol", "dl", "hr", "pre", "blockquote", "table", "div"};
 	
-	private static int findHtmlTags(String s, Pattern tagPattern) {
-		Matcher m = tagPattern.matcher(s);
+	private static int tagNameEnd(String s, int start) {
 		int n = s.length();
-		int start = 0;
-		while(start<n) {
-			int tagStart = s.indexOf('<', start);
-			if(tagStart<0 || tagStart==n)
-				return -1;
-			m.region(tagStart+1, n);
-			if(m.lookingAt())
-				return tagStart;
+		int i = start;
+		while(i<n) {
+			char c = s.charAt(i);
+			if(c>='a' && c<='z' || c>='A' && c<='Z' || c>='0' && c<='9')
+				i++;
 			else
-				start = tagStart+1;
+				break;
 		}
-		return 0;
+		return i;
 	}
 	
-	public void printCommentText(Tag[] tags, boolean stopOnBlock) {
-		for(Tag t : tags) {
-			if(t instanceof SeeTag)
-				out.print(tagLink((SeeTag) t));
-			else if(t.kind().equals("@code")) {
-				String s = t.text()
-					.replaceAll("\\&", "&amp;")
-					.replaceAll("\\<", "&lt;")
-					.replaceAll("\\>", "&gt;");
-				out.printf("<code>%s</code>", s);
-			}
-			else {
-				String s = t.text();
-				if(findHtmlTags(s, scriptTag)>=0) {
-					Doclet.rootDoc.printWarning("Not allowed to have <script> in comments. Did you forget &lt; or {@code}?");
-					s = scriptStrip.matcher(s).replaceAll("");
-				}
-				if(stopOnBlock) {
-					int end = findHtmlTags(s, blockTags);
-					if(end>=0) {
-						out.print(s.substring(0, end));
-						return;
-					}
+	private static boolean isTagName(String s, int start, int end, String name) {
+		return end-start==name.length() && s.regionMatches(true, start, name, 0, name.length());
+	}
+	
+	private static boolean isBlockTag(String s, int start, int end) {
+		if(end-start==2 && (s.charAt(start)=='h' || s.charAt(start)=='H') && Character.isDigit(s.charAt(start+1)))
+			return true;
+		for(String tag : blockTags) {
+			if(isTagName(s, start, end, tag))
+				return true;
+		}
+		return false;
+	}
+	
+	private static int indexOfIgnoreCase(String s, String str, int from) {
+		int last = s.length()-str.length();
+		for(int i=from; i<=last; i++) {
+			if(s.regionMatches(true, i, str, 0, str.length()))
+				return i;
+		}
+		return -1;
+	}
+	
+	private boolean printCommentHtml(String s, boolean stopOnBlock) {
+		// single pass over the text: strips <script> elements, stops before the first block tag if requested
+		int n = s.length();
+		int from = 0;
+		boolean warned = false;
+		for(int i = s.indexOf('<'); i>=0; i = s.indexOf('<', i+1)) {
+			int nameEnd = tagNameEnd(s, i+1);
+			if(nameEnd==i+1)
+				continue;
+			if(isTagName(s, i+1, nameEnd, "script")) {
+				if(!warned) {
+					Doclet.printWarning("Not allowed to have <script> in comments. Did you forget &lt; or {@code}?");
+					warned = true;
 				}
-				out.print(s);
+				out.print(s, from, i);
+				int close = indexOfIgnoreCase(s, "</script", nameEnd);
+				int end = close<0 ? -1 : s.indexOf('>', close+8);
+				if(end<0)
+					return true; // unclosed script: drop the rest of the text
+				from = end+1;
+				i = end;
+			}
+			else if(stopOnBlock && isBlockTag(s, i+1, nameEnd)) {
+				out.print(s, from, i);
+				return false;
 			}
 		}
+		out.print(s, from, n);
+		return true;
+	}
+	
+	public void printCommentText(Token[] tags, boolean stopOnBlock) {
+		for(Token t : tags) {
+			if(t.kind==Token.LINK)
+				printTagLink(t);
+			else if(t.kind==Token.CODE)
+				out.print("<code>").printEscaped(t.text).print("</code>");
+			else if(!printCommentHtml(t.text, stopOnBlock))
+				return;
+		}
 	}
 
-	public void printCommentLine(Tag[] tags) {
+	public void printCommentLine(Token[] tags) {
 		printCommentText(tags, true);
 	}
 
-	public void printCommentPar(Tag[] tags) {
+	public void printCommentPar(Token[] tags) {
 		out.print("<div class=\"comment\"><p>"); // using only opening <p> within this block (for back/compat)
 		printCommentText(tags, false);
 		out.println("</div>");
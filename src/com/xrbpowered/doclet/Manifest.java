@@ -0,0 +1,102 @@
+package com.xrbpowered.doclet;
+
+import static com.xrbpowered.doclet.Options.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+public abstract class Manifest {
+
+	public static final String filename = "page-manifest";
+	public static final String header = "# XRBDoclet page manifest v1";
+
+	private static HashMap<String, String> previous = new HashMap<>();
+	private static TreeMap<String, String> current = new TreeMap<>();
+	private static String siteDigest = null;
+
+	private static File getFile() {
+		return new File(outPath, filename);
+	}
+
+	public static void load(DocModel model) {
+		previous.clear();
+		current.clear();
+		Fingerprint fp = new Fingerprint();
+		fp.add(docTitle).add(overviewPkg).add(date ? HtmlWriter.currentDate() : null).add(compact).add(ExtFragments.digest());
+		// pages are only compressed when they are written
+		fp.add(gzipMinSize);
+		List<String> names = model.listedNames();
+		Collections.sort(names);
+		for(String name : names)
+			fp.add(name);
+		for(String path : Assets.paths().values())
+			fp.add(path);
+		siteDigest = fp.digest();
+
+		File file = getFile();
+		if(!file.exists())
+			return;
+		try(BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			if(!header.equals(in.readLine()))
+				return;
+			String line;
+			while((line = in.readLine())!=null) {
+				int sep = line.indexOf('\t');
+				if(sep>0)
+					previous.put(line.substring(0, sep), line.substring(sep+1));
+			}
+		}
+		catch(IOException e) {
+			Doclet.printWarning("Cannot read "+file.getPath()+", regenerating all pages.");
+			previous.clear();
+		}
+	}
+
+	public static boolean isUpToDate(HtmlWriter writer) {
+		String path = writer.getPagePath();
+		Fingerprint fp = new Fingerprint();
+		fp.add(siteDigest);
+		if(!writer.fingerprint(fp)) {
+			current.put(path, "-");
+			return false;
+		}
+		String digest = fp.digest();
+		current.put(path, digest);
+		return digest.equals(previous.get(path)) && OutputSink.get().exists(path);
+	}
+
+	public static void save() {
+		int removed = 0;
+		for(String path : previous.keySet()) {
+			if(!current.containsKey(path)) {
+				GzipFiles.remove(path);
+				if(OutputSink.get().delete(path))
+					removed++;
+			}
+		}
+		if(removed>0)
+			Doclet.printNotice(String.format("Removed %d stale pages.", removed));
+
+		try(PrintStream out = new PrintStream(getFile(), "UTF-8")) {
+			out.println(header);
+			for(String path : current.keySet()) {
+				out.print(path);
+				out.print('\t');
+				out.println(current.get(path));
+			}
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.xrbpowered.doclet;
+
+public abstract class MemberModel extends ElementModel {
+
+	public final ClassModel containingClass;
+	public final String qualifiedName;
+
+	private String anchor;
+	private String signature = "";
+	private String flatSignature = "";
+	private String title;
+
+	public MemberModel(int id, String name, String qualifiedName, ClassModel containingClass) {
+		super(id, name, false);
+		this.containingClass = containingClass;
+		this.qualifiedName = qualifiedName;
+		this.anchor = name;
+		this.title = qualifiedName;
+	}
+
+	void setSignature(String anchor, String signature, String flatSignature, String title) {
+		checkMutable();
+		this.anchor = anchor;
+		this.signature = signature;
+		this.flatSignature = flatSignature;
+		this.title = title;
+	}
+
+	public String anchor() {
+		loadBody();
+		return anchor;
+	}
+
+	public String signature() {
+		loadBody();
+		return signature;
+	}
+
+	public String flatSignature() {
+		loadBody();
+		return flatSignature;
+	}
+
+	public String title() {
+		loadBody();
+		return title;
+	}
+
+	public boolean isEnumConstant() {
+		return false;
+	}
+
+	@Override
+	public String qualifiedName() {
+		return qualifiedName;
+	}
+
+}
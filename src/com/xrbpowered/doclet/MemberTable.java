@@ -0,0 +1,105 @@
+package com.xrbpowered.doclet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.FieldDoc;
+import com.sun.javadoc.MethodDoc;
+
+public class MemberTable {
+
+	private static ConcurrentHashMap<ClassDoc, MemberTable> tables = new ConcurrentHashMap<>();
+
+	public final ClassDoc cls;
+	public final List<MethodDoc> methods;
+	public final List<FieldDoc> fields;
+	public final Map<MethodDoc, MethodDoc> overrides;
+
+	private MemberTable(ClassDoc cls) {
+		this.cls = cls;
+
+		ArrayList<MethodDoc> methods = new ArrayList<>();
+		HashMap<String, List<MethodDoc>> methodKeys = new HashMap<>();
+		HashMap<MethodDoc, MethodDoc> overrides = new HashMap<>();
+		for(MethodDoc m : cls.methods())
+			addMethod(m, methods, methodKeys);
+		if(cls.superclass()!=null)
+			inheritMethods(forClass(cls.superclass()), methods, methodKeys, overrides);
+		for(ClassDoc imp : cls.interfaces())
+			inheritMethods(forClass(imp), methods, methodKeys, overrides);
+		this.methods = Collections.unmodifiableList(methods);
+		this.overrides = Collections.unmodifiableMap(overrides);
+
+		ArrayList<FieldDoc> fields = new ArrayList<>();
+		HashSet<String> hideMask = new HashSet<>();
+		for(FieldDoc f : cls.fields()) {
+			fields.add(f);
+			hideMask.add(f.name());
+		}
+		if(cls.superclass()!=null)
+			inheritFields(forClass(cls.superclass()), fields, hideMask);
+		for(ClassDoc imp : cls.interfaces())
+			inheritFields(forClass(imp), fields, hideMask);
+		this.fields = Collections.unmodifiableList(fields);
+	}
+
+	private static String methodKey(MethodDoc m) {
+		// overriding methods share name and arity, but not necessarily erasure (generic overrides)
+		return m.name()+"/"+m.parameters().length;
+	}
+
+	private static void addMethod(MethodDoc m, List<MethodDoc> methods, HashMap<String, List<MethodDoc>> methodKeys) {
+		methods.add(m);
+		String key = methodKey(m);
+		List<MethodDoc> list = methodKeys.get(key);
+		if(list==null) {
+			list = new ArrayList<>(1);
+			methodKeys.put(key, list);
+		}
+		list.add(m);
+	}
+
+	private void inheritMethods(MemberTable sup, List<MethodDoc> methods, HashMap<String, List<MethodDoc>> methodKeys, HashMap<MethodDoc, MethodDoc> overrides) {
+		for(MethodDoc cm : sup.methods) {
+			MethodDoc overriding = null;
+			List<MethodDoc> candidates = methodKeys.get(methodKey(cm));
+			if(candidates!=null) {
+				for(MethodDoc m : candidates) {
+					if(m.overrides(cm)) {
+						overriding = m;
+						break;
+					}
+				}
+			}
+			if(overriding==null)
+				addMethod(cm, methods, methodKeys);
+			else if(overriding.containingClass()==cls && !overrides.containsKey(overriding))
+				overrides.put(overriding, cm);
+		}
+	}
+
+	private static void inheritFields(MemberTable sup, List<FieldDoc> fields, HashSet<String> hideMask) {
+		for(FieldDoc f : sup.fields) {
+			if(hideMask.add(f.name()))
+				fields.add(f);
+		}
+	}
+
+	public static MemberTable forClass(ClassDoc cls) {
+		MemberTable table = tables.get(cls);
+		if(table==null) {
+			table = new MemberTable(cls);
+			MemberTable prev = tables.putIfAbsent(cls, table);
+			if(prev!=null)
+				table = prev;
+		}
+		return table;
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.xrbpowered.doclet;
+
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class MemorySink extends OutputSink {
+
+	// Keeps all files in memory, e.g. to embed the doclet or to check its output:
+	// OutputSink.set(sink), then Doclet.render(model) and read sink.files.
+
+	public final SortedMap<String, byte[]> files = new ConcurrentSkipListMap<>();
+
+	@Override
+	public void write(String path, byte[] data, int length) {
+		files.put(path, Arrays.copyOf(data, length));
+	}
+
+	@Override
+	public boolean exists(String path) {
+		return files.containsKey(path);
+	}
+
+	@Override
+	public boolean delete(String path) {
+		return files.remove(path)!=null;
+	}
+
+}
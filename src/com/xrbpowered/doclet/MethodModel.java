@@ -0,0 +1,89 @@
+package com.xrbpowered.doclet;
+
+public class MethodModel extends MemberModel {
+
+	public static final MethodModel[] none = {};
+
+	public final boolean constructor;
+	public final boolean method;
+
+	private boolean varArgs = false;
+	private boolean isAbstract = false;
+	private boolean defaultConstructor = false;
+	private TypeModel[] typeParameters = TypeModel.none;
+	private TypeModel returnType = null;
+	private String[] paramNames = {};
+	private TypeModel[] paramTypes = TypeModel.none;
+	private TypeModel[] thrownTypes = TypeModel.none;
+	private MethodModel overridden = null;
+
+	public MethodModel(int id, String name, String qualifiedName, ClassModel containingClass, boolean constructor, boolean method) {
+		super(id, name, qualifiedName, containingClass);
+		this.constructor = constructor;
+		this.method = method;
+	}
+
+	void setDeclaration(boolean varArgs, boolean isAbstract, boolean defaultConstructor, TypeModel[] typeParameters, TypeModel returnType,
+			String[] paramNames, TypeModel[] paramTypes, TypeModel[] thrownTypes) {
+		checkMutable();
+		this.varArgs = varArgs;
+		this.isAbstract = isAbstract;
+		this.defaultConstructor = defaultConstructor;
+		this.typeParameters = typeParameters;
+		this.returnType = returnType;
+		this.paramNames = paramNames;
+		this.paramTypes = paramTypes;
+		this.thrownTypes = thrownTypes;
+	}
+
+	void setOverridden(MethodModel overridden) {
+		checkMutable();
+		this.overridden = overridden;
+	}
+
+	public boolean varArgs() {
+		loadBody();
+		return varArgs;
+	}
+
+	public boolean isAbstract() {
+		loadBody();
+		return isAbstract;
+	}
+
+	public boolean defaultConstructor() {
+		loadBody();
+		return defaultConstructor;
+	}
+
+	public TypeModel[] typeParameters() {
+		loadBody();
+		return typeParameters;
+	}
+
+	public TypeModel returnType() {
+		loadBody();
+		return returnType;
+	}
+
+	public String[] paramNames() {
+		loadBody();
+		return paramNames;
+	}
+
+	public TypeModel[] paramTypes() {
+		loadBody();
+		return paramTypes;
+	}
+
+	public TypeModel[] thrownTypes() {
+		loadBody();
+		return thrownTypes;
+	}
+
+	public MethodModel overridden() {
+		loadBody();
+		return overridden;
+	}
+
+}
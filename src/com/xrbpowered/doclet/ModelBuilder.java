@@ -0,0 +1,450 @@
+package com.xrbpowered.doclet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.sun.javadoc.AnnotationDesc;
+import com.sun.javadoc.AnnotationValue;
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.Doc;
+import com.sun.javadoc.ExecutableMemberDoc;
+import com.sun.javadoc.FieldDoc;
+import com.sun.javadoc.MemberDoc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.ParamTag;
+import com.sun.javadoc.Parameter;
+import com.sun.javadoc.ParameterizedType;
+import com.sun.javadoc.ProgramElementDoc;
+import com.sun.javadoc.RootDoc;
+import com.sun.javadoc.SeeTag;
+import com.sun.javadoc.SourcePosition;
+import com.sun.javadoc.Tag;
+import com.sun.javadoc.ThrowsTag;
+import com.sun.javadoc.Type;
+import com.sun.javadoc.TypeVariable;
+import com.sun.javadoc.WildcardType;
+import com.xrbpowered.doclet.CommentModel.ParamComment;
+import com.xrbpowered.doclet.CommentModel.ThrowsComment;
+
+public class ModelBuilder {
+
+	// javadoc computes most of its data lazily and is not thread-safe,
+	// so everything the writers need is copied out once on the main thread
+
+	private final RootDoc root;
+	private final IdentityHashMap<Doc, ElementModel> records = new IdentityHashMap<>();
+	private final IdentityHashMap<Doc, Boolean> listedDocs = new IdentityHashMap<>();
+	private final HashMap<String, TypeModel> types = new HashMap<>();
+	private final ArrayList<ElementModel> elements = new ArrayList<>();
+
+	private final IdentityHashMap<ClassDoc, Boolean> detailedDocs = new IdentityHashMap<>();
+	private final ArrayList<ClassDoc> detailedList = new ArrayList<>();
+
+	public ModelBuilder(RootDoc root) {
+		this.root = root;
+	}
+
+	public DocModel build() {
+		for(PackageDoc pkg : root.specifiedPackages()) {
+			if(!Options.isOverview(pkg.name()))
+				listedDocs.put(pkg, true);
+		}
+		for(ClassDoc cls : root.classes())
+			listedDocs.put(cls, true);
+
+		ArrayList<PackageModel> packages = new ArrayList<>();
+		PackageModel overview = null;
+		for(PackageDoc pkg : root.specifiedPackages()) {
+			PackageModel p = packageModel(pkg);
+			packages.add(p);
+			if(!p.listed)
+				overview = p;
+		}
+		ArrayList<ClassModel> classes = new ArrayList<>();
+		for(ClassDoc cls : root.classes())
+			classes.add(classModel(cls));
+
+		for(ClassDoc cls : root.classes()) {
+			addDetailed(cls);
+			for(ClassDoc c : cls.innerClasses())
+				addDetailed(c);
+		}
+		for(PackageDoc pkg : root.specifiedPackages()) {
+			for(ClassDoc c : pkg.allClasses())
+				addDetailed(c);
+		}
+		for(int i=0; i<detailedList.size(); i++)
+			fillDetails(detailedList.get(i));
+
+		for(ClassDoc cls : root.classes())
+			fillMemberTable(cls);
+		for(PackageDoc pkg : root.specifiedPackages())
+			fillPackage(pkg);
+
+		return new DocModel(elements, packages, classes, overview);
+	}
+
+	private <T extends ElementModel> T register(Doc doc, T rec) {
+		records.put(doc, rec);
+		elements.add(rec);
+		return rec;
+	}
+
+	private boolean isListed(Doc doc) {
+		return listedDocs.containsKey(doc);
+	}
+
+	private void addDetailed(ClassDoc cls) {
+		if(detailedDocs.containsKey(cls))
+			return;
+		detailedDocs.put(cls, true);
+		detailedList.add(cls);
+		if(cls.superclass()!=null)
+			addDetailed(cls.superclass());
+		for(ClassDoc c : cls.interfaces())
+			addDetailed(c);
+	}
+
+	public PackageModel packageModel(PackageDoc pkg) {
+		PackageModel p = (PackageModel) records.get(pkg);
+		if(p==null)
+			p = register(pkg, new PackageModel(elements.size(), pkg.name(), isListed(pkg)));
+		return p;
+	}
+
+	private void fillPackage(PackageDoc pkg) {
+		PackageModel p = packageModel(pkg);
+		p.setComment(comment(pkg));
+		// package must contain package-info.java or package.html in order to have source position
+		SourcePosition pos = pkg.position();
+		if(pos!=null)
+			p.setDocFilesPath(new File(pos.file().getParentFile(), "doc-files").getAbsolutePath());
+		p.setClasses(classModels(pkg.interfaces()), classModels(pkg.enums()), classModels(pkg.ordinaryClasses()),
+				classModels(pkg.exceptions()), classModels(pkg.errors()), classModels(pkg.annotationTypes()));
+	}
+
+	public ClassModel classModel(ClassDoc cls) {
+		ClassModel c = (ClassModel) records.get(cls);
+		if(c==null) {
+			c = register(cls, new ClassModel(elements.size(), cls.name(), isListed(cls),
+					cls.qualifiedName(), cls.simpleTypeName(), cls.containingPackage().name(),
+					cls.isInterface(), cls.isAnnotationType(), cls.isEnum()));
+			fillElement(c, cls);
+			ClassModel outer = cls.containingClass()!=null ? classModel(cls.containingClass()) : null;
+			c.setDeclaration(outer, typeParams(cls.typeParameters()));
+		}
+		return c;
+	}
+
+	private ClassModel[] classModels(ClassDoc[] list) {
+		ClassModel[] res = new ClassModel[list.length];
+		for(int i=0; i<list.length; i++)
+			res[i] = classModel(list[i]);
+		return res;
+	}
+
+	private void fillDetails(ClassDoc cls) {
+		ClassModel c = classModel(cls);
+		c.setComment(comment(cls));
+		ClassModel superclass = cls.superclass()!=null ? classModel(cls.superclass()) : null;
+		c.setDetails(superclass, type(cls.superclassType()), classModels(cls.interfaces()), types(cls.interfaceTypes()),
+				classModels(cls.innerClasses()), fieldModels(cls.enumConstants(), true), fieldModels(cls.fields(), true),
+				methodModels(cls.constructors(), true), methodModels(cls.methods(), true));
+	}
+
+	private void fillMemberTable(ClassDoc cls) {
+		ClassModel c = classModel(cls);
+		MemberTable table = MemberTable.forClass(cls);
+		c.setAllMembers(fieldModels(table.fields.toArray(new FieldDoc[table.fields.size()]), false),
+				methodModels(table.methods.toArray(new MethodDoc[table.methods.size()]), false));
+		for(Map.Entry<MethodDoc, MethodDoc> e : table.overrides.entrySet())
+			((MethodModel) memberModel(e.getKey())).setOverridden((MethodModel) memberModel(e.getValue()));
+	}
+
+	private FieldModel[] fieldModels(FieldDoc[] list, boolean withComments) {
+		FieldModel[] res = new FieldModel[list.length];
+		for(int i=0; i<list.length; i++) {
+			res[i] = (FieldModel) memberModel(list[i]);
+			if(withComments)
+				res[i].setComment(comment(list[i]));
+		}
+		return res;
+	}
+
+	private MethodModel[] methodModels(ExecutableMemberDoc[] list, boolean withComments) {
+		MethodModel[] res = new MethodModel[list.length];
+		for(int i=0; i<list.length; i++) {
+			res[i] = (MethodModel) memberModel(list[i]);
+			if(withComments)
+				res[i].setComment(comment(list[i]));
+		}
+		return res;
+	}
+
+	public MemberModel memberModel(MemberDoc mem) {
+		MemberModel m = (MemberModel) records.get(mem);
+		if(m!=null)
+			return m;
+		ClassModel cls = classModel(mem.containingClass());
+		if(mem instanceof FieldDoc) {
+			FieldDoc fld = (FieldDoc) mem;
+			FieldModel f = register(fld, new FieldModel(elements.size(), fld.name(), fld.qualifiedName(), cls, fld.isEnumConstant()));
+			fillElement(f, fld);
+			f.setType(type(fld.type()), fld.constantValueExpression());
+			return f;
+		}
+		else {
+			ExecutableMemberDoc met = (ExecutableMemberDoc) mem;
+			MethodModel mm = register(met, new MethodModel(elements.size(), met.name(), met.qualifiedName(), cls, met.isConstructor(), met.isMethod()));
+			fillElement(mm, met);
+			TypeModel[] typeParameters = typeParams(met.typeParameters());
+			boolean isAbstract = false;
+			TypeModel returnType = null;
+			if(met instanceof MethodDoc) {
+				isAbstract = ((MethodDoc) met).isAbstract();
+				returnType = type(((MethodDoc) met).returnType());
+			}
+			Parameter[] params = met.parameters();
+			String[] paramNames = new String[params.length];
+			TypeModel[] paramTypes = new TypeModel[params.length];
+			for(int i=0; i<params.length; i++) {
+				paramNames[i] = params[i].name();
+				paramTypes[i] = type(params[i].type());
+			}
+			mm.setDeclaration(met.isVarArgs(), isAbstract, isDefaultConstructor(met), typeParameters, returnType,
+					paramNames, paramTypes, types(met.thrownExceptionTypes()));
+			mm.setSignature(methodAnchor(met), met.signature(), met.flatSignature(), mm.qualifiedName+met.signature());
+			return mm;
+		}
+	}
+
+	private void fillElement(ElementModel e, ProgramElementDoc doc) {
+		AnnotationDesc[] anns = doc.annotations();
+		AnnotationModel[] annotations = AnnotationModel.none;
+		if(anns.length>0) {
+			annotations = new AnnotationModel[anns.length];
+			for(int i=0; i<anns.length; i++)
+				annotations[i] = annotation(anns[i]);
+		}
+		e.setModifiers(doc.modifierSpecifier(), doc.modifiers(), isDeprecated(doc), annotations);
+	}
+
+	public static boolean isDeprecated(ProgramElementDoc doc) {
+		for(AnnotationDesc ann : doc.annotations()) {
+			if(ann.annotationType().qualifiedName().equals("java.lang.Deprecated"))
+				return true;
+		}
+		return doc.tags("@deprecated").length>0;
+	}
+
+	public static boolean isDefaultConstructor(ExecutableMemberDoc met) {
+		return met.isConstructor() && (met.position()==null || met.position().line()==met.containingClass().position().line());
+	}
+
+	public static String methodAnchor(ExecutableMemberDoc met) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(met.name());
+		Parameter[] params = met.parameters();
+		for(int i=0; i<params.length; i++) {
+			sb.append("-");
+			Type type = params[i].type();
+			if(type.isPrimitive())
+				sb.append(type.typeName());
+			else {
+				ClassDoc cls = type.asClassDoc();
+				if(cls==null)
+					sb.append(type.simpleTypeName());
+				else
+					sb.append(cls.qualifiedName());
+			}
+			int dims = type.dimension().length()/2;
+			if(met.isVarArgs() && i==params.length-1 && dims>0)
+				sb.append("...");
+			else {
+				for(int d=0; d<dims; d++)
+					sb.append(":A");
+			}
+		}
+		sb.append("-");
+		return sb.toString();
+	}
+
+	private AnnotationModel annotation(AnnotationDesc ann) {
+		AnnotationDesc.ElementValuePair[] pairs = ann.elementValues();
+		String[] names = new String[pairs.length];
+		AnnotationModel.Value[] values = new AnnotationModel.Value[pairs.length];
+		for(int i=0; i<pairs.length; i++) {
+			names[i] = pairs[i].element().name();
+			values[i] = annotationValue(pairs[i].value());
+		}
+		return new AnnotationModel(ann.toString(), type(ann.annotationType()), names, values);
+	}
+
+	private AnnotationModel.Value annotationValue(AnnotationValue v) {
+		Object obj = v.value();
+		if(obj instanceof Type)
+			return new AnnotationModel.Value(AnnotationModel.Value.TYPE, null, type((Type) obj), null, null);
+		else if(obj instanceof FieldDoc)
+			return new AnnotationModel.Value(AnnotationModel.Value.FIELD, null, null, (FieldModel) memberModel((FieldDoc) obj), null);
+		else if(obj instanceof AnnotationDesc)
+			return new AnnotationModel.Value(AnnotationModel.Value.ANNOTATION, null, type(((AnnotationDesc) obj).annotationType()), null, null);
+		else if(obj instanceof AnnotationValue[]) {
+			AnnotationValue[] vals = (AnnotationValue[]) obj;
+			AnnotationModel.Value[] res = new AnnotationModel.Value[vals.length];
+			for(int i=0; i<vals.length; i++)
+				res[i] = annotationValue(vals[i]);
+			return new AnnotationModel.Value(AnnotationModel.Value.ARRAY, null, null, null, res);
+		}
+		else
+			return new AnnotationModel.Value(AnnotationModel.Value.CONSTANT, obj.toString(), null, null, null);
+	}
+
+	private TypeModel type(Type type) {
+		return type(type, false);
+	}
+
+	private TypeModel[] types(Type[] list) {
+		if(list==null || list.length==0)
+			return TypeModel.none;
+		TypeModel[] res = new TypeModel[list.length];
+		for(int i=0; i<list.length; i++)
+			res[i] = type(list[i], false);
+		return res;
+	}
+
+	private TypeModel[] typeParams(TypeVariable[] list) {
+		if(list==null || list.length==0)
+			return TypeModel.none;
+		TypeModel[] res = new TypeModel[list.length];
+		for(int i=0; i<list.length; i++)
+			res[i] = type(list[i], true);
+		return res;
+	}
+
+	private TypeModel type(Type type, boolean withBounds) {
+		if(type==null)
+			return null;
+		String key = type.toString();
+		TypeVariable tv = type.asTypeVariable();
+		Type[] bounds = null;
+		if(withBounds && tv!=null) {
+			// bounds are only shown in type parameter declarations
+			bounds = tv.bounds();
+			if(bounds.length>0) {
+				StringBuilder sb = new StringBuilder(key);
+				for(Type b : bounds)
+					sb.append('&').append(b.toString());
+				key = sb.toString();
+			}
+		}
+		TypeModel t = types.get(key);
+		if(t!=null)
+			return t;
+		
+		WildcardType wt = type.asWildcardType();
+		if(wt!=null)
+			t = new TypeModel(key, TypeModel.WILDCARD, type.typeName(), null, TypeModel.none, types(wt.extendsBounds()), types(wt.superBounds()), "");
+		else if(tv!=null)
+			t = new TypeModel(key, TypeModel.TYPEVAR, type.typeName(), null, TypeModel.none, bounds==null ? TypeModel.none : types(bounds), TypeModel.none, "");
+		else {
+			ParameterizedType ptype = type.asParameterizedType();
+			TypeModel[] args = ptype==null ? TypeModel.none : types(ptype.typeArguments());
+			if(type.isPrimitive())
+				t = new TypeModel(key, TypeModel.PRIMITIVE, type.typeName(), null, args, TypeModel.none, TypeModel.none, type.dimension());
+			else {
+				ClassDoc cls = type.asClassDoc();
+				t = new TypeModel(key, TypeModel.CLASS, type.simpleTypeName(), cls==null ? null : classModel(cls),
+						args, TypeModel.none, TypeModel.none, type.dimension());
+			}
+		}
+		types.put(key, t);
+		return t;
+	}
+
+	private CommentModel comment(Doc doc) {
+		Tag[] deprecated = doc.tags("@deprecated");
+		Tag[] since = doc.tags("@since");
+		ParamTag[] params = {};
+		ParamTag[] typeParams = {};
+		ThrowsTag[] throwsTags = {};
+		Tag[] returns = {};
+		if(doc instanceof ExecutableMemberDoc) {
+			ExecutableMemberDoc met = (ExecutableMemberDoc) doc;
+			params = met.paramTags();
+			typeParams = met.typeParamTags();
+			throwsTags = met.throwsTags();
+			returns = met.tags("@return");
+		}
+		else if(doc instanceof ClassDoc)
+			typeParams = ((ClassDoc) doc).typeParamTags();
+		
+		Tag[] inline = doc.inlineTags();
+		if(inline.length==0 && doc.tags().length==0 && doc.getRawCommentText().isEmpty())
+			return CommentModel.empty;
+
+		String[] sinceText = new String[since.length];
+		for(int i=0; i<since.length; i++)
+			sinceText[i] = since[i].text();
+		ThrowsComment[] throwsComments = new ThrowsComment[throwsTags.length];
+		for(int i=0; i<throwsTags.length; i++)
+			throwsComments[i] = new ThrowsComment(throwsTags[i].exceptionName(), type(throwsTags[i].exceptionType()), tokens(throwsTags[i].inlineTags()));
+
+		return new CommentModel(doc.getRawCommentText(), tokens(inline), tokens(doc.firstSentenceTags()), doc.tags().length>0,
+				sinceText, tokens(doc.seeTags()), blocks(deprecated), paramComments(params), paramComments(typeParams),
+				blocks(returns), throwsComments);
+	}
+
+	private ParamComment[] paramComments(ParamTag[] tags) {
+		if(tags.length==0)
+			return ParamComment.none;
+		ParamComment[] res = new ParamComment[tags.length];
+		for(int i=0; i<tags.length; i++)
+			res[i] = new ParamComment(tags[i].parameterName(), tokens(tags[i].inlineTags()));
+		return res;
+	}
+
+	private CommentModel.Token[][] blocks(Tag[] tags) {
+		if(tags.length==0)
+			return CommentModel.noBlocks;
+		CommentModel.Token[][] res = new CommentModel.Token[tags.length][];
+		for(int i=0; i<tags.length; i++)
+			res[i] = tokens(tags[i].inlineTags());
+		return res;
+	}
+
+	private CommentModel.Token[] tokens(Tag[] tags) {
+		if(tags==null || tags.length==0)
+			return CommentModel.Token.none;
+		CommentModel.Token[] res = new CommentModel.Token[tags.length];
+		for(int i=0; i<tags.length; i++) {
+			Tag t = tags[i];
+			if(t instanceof SeeTag)
+				res[i] = linkToken((SeeTag) t);
+			else if(t.kind().equals("@code"))
+				res[i] = new CommentModel.Token(CommentModel.Token.CODE, t.text(), null, false, null);
+			else
+				res[i] = new CommentModel.Token(CommentModel.Token.TEXT, t.text(), null, false, null);
+		}
+		return res;
+	}
+
+	private CommentModel.Token linkToken(SeeTag see) {
+		ElementModel target = null;
+		if(see.referencedMember()!=null)
+			target = memberModel(see.referencedMember());
+		else if(see.referencedClass()!=null)
+			target = classModel(see.referencedClass());
+		else if(see.referencedPackage()!=null)
+			target = packageModel(see.referencedPackage());
+		return new CommentModel.Token(CommentModel.Token.LINK, see.text(), see.label(), see.name().equals("@linkplain"), target);
+	}
+
+	public static DocModel build(RootDoc root) {
+		return new ModelBuilder(root).build();
+	}
+
+}
@@ -0,0 +1,712 @@
+package com.xrbpowered.doclet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import com.xrbpowered.doclet.CommentModel.ParamComment;
+import com.xrbpowered.doclet.CommentModel.ThrowsComment;
+import com.xrbpowered.doclet.CommentModel.Token;
+
+public class ModelFile {
+
+	public static final String filename = "doc-model";
+	public static final int magic = 0x58524244; // XRBD
+	public static final int version = 2;
+
+	private static final int PACKAGE = 0;
+	private static final int CLASS = 1;
+	private static final int FIELD = 2;
+	private static final int METHOD = 3;
+
+	// File layout: header, string table, element headers, type table, index, element bodies, comments.
+	// Element headers only hold the final fields, so that bodies and types can refer to any element by id.
+	// The index lists the packages and classes of the model and the body and comment length of each element.
+	// Loading decodes everything up to the index, bodies and comments are decoded on first access.
+	// All numbers are unsigned varints, strings and references are stored as index+1 with 0 for null.
+
+	private static class Block extends ByteArrayOutputStream {
+		public void writeInt(int x) {
+			while((x & ~0x7f)!=0) {
+				write((x & 0x7f) | 0x80);
+				x >>>= 7;
+			}
+			write(x);
+		}
+
+		public void writeBoolean(boolean b) {
+			write(b ? 1 : 0);
+		}
+	}
+
+	private final HashMap<String, Integer> stringIds = new HashMap<>();
+	private final ArrayList<String> strings = new ArrayList<>();
+	private final IdentityHashMap<TypeModel, Integer> typeIds = new IdentityHashMap<>();
+	private final Block headers = new Block();
+	private final Block types = new Block();
+	private final Block index = new Block();
+	private final Block bodies = new Block();
+	private final Block comments = new Block();
+
+	private ByteBuffer in;
+	private String[] stringTable;
+	private ElementModel[] elements;
+	private TypeModel[] typeTable;
+	private int[] bodyOffsets;
+	private int[] commentOffsets;
+
+	private ModelFile() {
+	}
+
+	public static File getFile() {
+		if(Options.modelFile!=null)
+			return new File(Options.modelFile);
+		else if(OutputSink.isArchivePath(Options.outPath))
+			return new File(new File(Options.outPath).getAbsoluteFile().getParentFile(), filename); // next to the archive
+		else
+			return new File(Options.outPath, filename);
+	}
+
+	public static void save(DocModel model, File file) {
+		ModelFile w = new ModelFile();
+		w.writeModel(model);
+		try(OutputStream out = new FileOutputStream(file)) {
+			Block header = new Block();
+			header.writeInt(magic);
+			header.writeInt(version);
+			header.writeInt(w.strings.size());
+			for(String s : w.strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				header.writeInt(bytes.length);
+				header.write(bytes);
+			}
+			header.writeTo(out);
+			w.headers.writeTo(out);
+			// type count is only known after all bodies have been written
+			Block count = new Block();
+			count.writeInt(w.typeIds.size());
+			count.writeTo(out);
+			w.types.writeTo(out);
+			w.index.writeTo(out);
+			w.bodies.writeTo(out);
+			w.comments.writeTo(out);
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static DocModel load(File file) {
+		try {
+			// element bodies are decoded while rendering, so the file data is kept until all of them are done
+			ModelFile r = new ModelFile();
+			r.in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			return r.readModel();
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// writing
+
+	private void writeString(Block out, String s) {
+		if(s==null) {
+			out.writeInt(0);
+			return;
+		}
+		Integer id = stringIds.get(s);
+		if(id==null) {
+			id = strings.size();
+			strings.add(s);
+			stringIds.put(s, id);
+		}
+		out.writeInt(id+1);
+	}
+
+	private void writeStrings(Block out, String[] list) {
+		out.writeInt(list.length);
+		for(String s : list)
+			writeString(out, s);
+	}
+
+	private static void writeRef(Block out, ElementModel e) {
+		out.writeInt(e==null ? 0 : e.id+1);
+	}
+
+	private static void writeRefs(Block out, ElementModel[] list) {
+		out.writeInt(list.length);
+		for(ElementModel e : list)
+			writeRef(out, e);
+	}
+
+	private int typeId(TypeModel t) {
+		Integer id = typeIds.get(t);
+		if(id!=null)
+			return id;
+		// nested types are written first, so that the reader can resolve them
+		for(TypeModel a : t.arguments)
+			typeId(a);
+		for(TypeModel b : t.bounds)
+			typeId(b);
+		for(TypeModel b : t.superBounds)
+			typeId(b);
+		types.writeInt(t.kind);
+		writeString(types, t.key);
+		writeString(types, t.name);
+		writeRef(types, t.cls);
+		writeTypes(types, t.arguments);
+		writeTypes(types, t.bounds);
+		writeTypes(types, t.superBounds);
+		writeString(types, t.dimension);
+		id = typeIds.size();
+		typeIds.put(t, id);
+		return id;
+	}
+
+	private void writeType(Block out, TypeModel t) {
+		out.writeInt(t==null ? 0 : typeId(t)+1);
+	}
+
+	private void writeTypes(Block out, TypeModel[] list) {
+		out.writeInt(list.length);
+		for(TypeModel t : list)
+			writeType(out, t);
+	}
+
+	private void writeTokens(Block out, Token[] list) {
+		out.writeInt(list.length);
+		for(Token t : list) {
+			out.writeInt(t.kind);
+			writeString(out, t.text);
+			if(t.kind==Token.LINK) {
+				writeString(out, t.label);
+				out.writeBoolean(t.plain);
+				writeRef(out, t.target);
+			}
+		}
+	}
+
+	private void writeBlocks(Block out, Token[][] list) {
+		out.writeInt(list.length);
+		for(Token[] t : list)
+			writeTokens(out, t);
+	}
+
+	private void writeParams(Block out, ParamComment[] list) {
+		out.writeInt(list.length);
+		for(ParamComment p : list) {
+			writeString(out, p.name);
+			writeTokens(out, p.text);
+		}
+	}
+
+	private void writeComment(Block out, CommentModel c) {
+		if(c==CommentModel.empty) {
+			out.writeBoolean(false);
+			return;
+		}
+		out.writeBoolean(true);
+		writeString(out, c.raw);
+		writeTokens(out, c.inline);
+		writeTokens(out, c.firstSentence);
+		out.writeBoolean(c.hasTags);
+		writeStrings(out, c.since);
+		writeTokens(out, c.see);
+		writeBlocks(out, c.deprecated);
+		writeParams(out, c.params);
+		writeParams(out, c.typeParams);
+		writeBlocks(out, c.returns);
+		out.writeInt(c.throwsTags.length);
+		for(ThrowsComment t : c.throwsTags) {
+			writeString(out, t.exceptionName);
+			writeType(out, t.exceptionType);
+			writeTokens(out, t.text);
+		}
+	}
+
+	private void writeAnnotationValue(Block out, AnnotationModel.Value v) {
+		out.writeInt(v.kind);
+		switch(v.kind) {
+			case AnnotationModel.Value.TYPE:
+			case AnnotationModel.Value.ANNOTATION:
+				writeType(out, v.type);
+				break;
+			case AnnotationModel.Value.FIELD:
+				writeRef(out, v.field);
+				break;
+			case AnnotationModel.Value.ARRAY:
+				out.writeInt(v.values.length);
+				for(AnnotationModel.Value val : v.values)
+					writeAnnotationValue(out, val);
+				break;
+			default:
+				writeString(out, v.text);
+		}
+	}
+
+	private void writeHeader(ElementModel e) {
+		if(e instanceof PackageModel)
+			headers.writeInt(PACKAGE);
+		else if(e instanceof ClassModel) {
+			ClassModel c = (ClassModel) e;
+			headers.writeInt(CLASS);
+			writeString(headers, c.qualifiedName);
+			writeString(headers, c.simpleTypeName);
+			writeString(headers, c.packageName);
+			headers.writeBoolean(c.isInterface);
+			headers.writeBoolean(c.isAnnotationType);
+			headers.writeBoolean(c.isEnum);
+		}
+		else {
+			MemberModel m = (MemberModel) e;
+			if(m instanceof FieldModel) {
+				headers.writeInt(FIELD);
+				headers.writeBoolean(((FieldModel) m).enumConstant);
+			}
+			else {
+				headers.writeInt(METHOD);
+				headers.writeBoolean(((MethodModel) m).constructor);
+				headers.writeBoolean(((MethodModel) m).method);
+			}
+			writeString(headers, m.qualifiedName);
+			writeRef(headers, m.containingClass);
+		}
+		writeString(headers, e.name);
+		headers.writeBoolean(e.listed);
+	}
+
+	private void writeBody(ElementModel e) {
+		Block out = bodies;
+		out.writeInt(e.modifierSpecifier());
+		writeString(out, e.modifiers());
+		out.writeBoolean(e.deprecated());
+		out.writeInt(e.annotations().length);
+		for(AnnotationModel ann : e.annotations()) {
+			writeString(out, ann.key);
+			writeType(out, ann.type);
+			writeStrings(out, ann.names);
+			for(AnnotationModel.Value v : ann.values)
+				writeAnnotationValue(out, v);
+		}
+
+		if(e instanceof PackageModel) {
+			PackageModel p = (PackageModel) e;
+			writeString(out, p.docFilesPath());
+			writeRefs(out, p.interfaces());
+			writeRefs(out, p.enums());
+			writeRefs(out, p.ordinaryClasses());
+			writeRefs(out, p.exceptions());
+			writeRefs(out, p.errors());
+			writeRefs(out, p.annotationTypes());
+		}
+		else if(e instanceof ClassModel) {
+			ClassModel c = (ClassModel) e;
+			writeRef(out, c.containingClass());
+			writeTypes(out, c.typeParameters());
+			out.writeBoolean(c.detailed());
+			if(c.detailed()) {
+				writeRef(out, c.superclass());
+				writeType(out, c.superclassType());
+				writeRefs(out, c.interfaces());
+				writeTypes(out, c.interfaceTypes());
+				writeRefs(out, c.innerClasses());
+				writeRefs(out, c.enumConstants());
+				writeRefs(out, c.fields());
+				writeRefs(out, c.constructors());
+				writeRefs(out, c.methods());
+				writeRefs(out, c.allFields());
+				writeRefs(out, c.allMethods());
+			}
+		}
+		else {
+			MemberModel m = (MemberModel) e;
+			writeString(out, m.anchor());
+			writeString(out, m.signature());
+			writeString(out, m.flatSignature());
+			writeString(out, m.title());
+			if(m instanceof FieldModel) {
+				FieldModel f = (FieldModel) m;
+				writeType(out, f.type());
+				writeString(out, f.constantValue());
+			}
+			else {
+				MethodModel mm = (MethodModel) m;
+				out.writeBoolean(mm.varArgs());
+				out.writeBoolean(mm.isAbstract());
+				out.writeBoolean(mm.defaultConstructor());
+				writeTypes(out, mm.typeParameters());
+				writeType(out, mm.returnType());
+				writeStrings(out, mm.paramNames());
+				writeTypes(out, mm.paramTypes());
+				writeTypes(out, mm.thrownTypes());
+				writeRef(out, mm.overridden());
+			}
+		}
+	}
+
+	private void writeModel(DocModel model) {
+		headers.writeInt(model.size());
+		for(ElementModel e : model.elements)
+			writeHeader(e);
+		writeRefs(index, model.packages.toArray(new ElementModel[model.packages.size()]));
+		writeRefs(index, model.classes.toArray(new ElementModel[model.classes.size()]));
+		writeRef(index, model.overview);
+		for(ElementModel e : model.elements) {
+			int body = bodies.size();
+			int comment = comments.size();
+			writeBody(e);
+			writeComment(comments, e.comment());
+			index.writeInt(bodies.size()-body);
+			index.writeInt(comments.size()-comment);
+		}
+	}
+
+	// reading
+
+	private int readInt() {
+		int x = 0;
+		for(int shift = 0;; shift += 7) {
+			int b = in.get();
+			x |= (b & 0x7f) << shift;
+			if((b & 0x80)==0)
+				return x;
+		}
+	}
+
+	private boolean readBoolean() {
+		return in.get()!=0;
+	}
+
+	private String readString() {
+		int id = readInt();
+		return id==0 ? null : stringTable[id-1];
+	}
+
+	private String[] readStrings() {
+		String[] res = new String[readInt()];
+		for(int i=0; i<res.length; i++)
+			res[i] = readString();
+		return res;
+	}
+
+	private ElementModel readRef() {
+		int id = readInt();
+		return id==0 ? null : elements[id-1];
+	}
+
+	private ClassModel readClass() {
+		return (ClassModel) readRef();
+	}
+
+	private ClassModel[] readClasses() {
+		int n = readInt();
+		if(n==0)
+			return ClassModel.none;
+		ClassModel[] res = new ClassModel[n];
+		for(int i=0; i<n; i++)
+			res[i] = readClass();
+		return res;
+	}
+
+	private FieldModel[] readFields() {
+		int n = readInt();
+		if(n==0)
+			return FieldModel.none;
+		FieldModel[] res = new FieldModel[n];
+		for(int i=0; i<n; i++)
+			res[i] = (FieldModel) readRef();
+		return res;
+	}
+
+	private MethodModel[] readMethods() {
+		int n = readInt();
+		if(n==0)
+			return MethodModel.none;
+		MethodModel[] res = new MethodModel[n];
+		for(int i=0; i<n; i++)
+			res[i] = (MethodModel) readRef();
+		return res;
+	}
+
+	private TypeModel readType() {
+		int id = readInt();
+		return id==0 ? null : typeTable[id-1];
+	}
+
+	private TypeModel[] readTypes() {
+		int n = readInt();
+		if(n==0)
+			return TypeModel.none;
+		TypeModel[] res = new TypeModel[n];
+		for(int i=0; i<n; i++)
+			res[i] = readType();
+		return res;
+	}
+
+	private Token[] readTokens() {
+		int n = readInt();
+		if(n==0)
+			return Token.none;
+		Token[] res = new Token[n];
+		for(int i=0; i<n; i++) {
+			int kind = readInt();
+			String text = readString();
+			if(kind==Token.LINK) {
+				String label = readString();
+				boolean plain = readBoolean();
+				res[i] = new Token(kind, text, label, plain, readRef());
+			}
+			else
+				res[i] = new Token(kind, text, null, false, null);
+		}
+		return res;
+	}
+
+	private Token[][] readBlocks() {
+		int n = readInt();
+		if(n==0)
+			return CommentModel.noBlocks;
+		Token[][] res = new Token[n][];
+		for(int i=0; i<n; i++)
+			res[i] = readTokens();
+		return res;
+	}
+
+	private ParamComment[] readParams() {
+		int n = readInt();
+		if(n==0)
+			return ParamComment.none;
+		ParamComment[] res = new ParamComment[n];
+		for(int i=0; i<n; i++) {
+			String name = readString();
+			res[i] = new ParamComment(name, readTokens());
+		}
+		return res;
+	}
+
+	private CommentModel readComment() {
+		if(!readBoolean())
+			return CommentModel.empty;
+		String raw = readString();
+		Token[] inline = readTokens();
+		Token[] firstSentence = readTokens();
+		boolean hasTags = readBoolean();
+		String[] since = readStrings();
+		Token[] see = readTokens();
+		Token[][] deprecated = readBlocks();
+		ParamComment[] params = readParams();
+		ParamComment[] typeParams = readParams();
+		Token[][] returns = readBlocks();
+		int n = readInt();
+		ThrowsComment[] throwsTags = n==0 ? ThrowsComment.none : new ThrowsComment[n];
+		for(int i=0; i<n; i++) {
+			String name = readString();
+			TypeModel type = readType();
+			throwsTags[i] = new ThrowsComment(name, type, readTokens());
+		}
+		return new CommentModel(raw, inline, firstSentence, hasTags, since, see, deprecated,
+				params, typeParams, returns, throwsTags);
+	}
+
+	private AnnotationModel.Value readAnnotationValue() {
+		int kind = readInt();
+		switch(kind) {
+			case AnnotationModel.Value.TYPE:
+			case AnnotationModel.Value.ANNOTATION:
+				return new AnnotationModel.Value(kind, null, readType(), null, null);
+			case AnnotationModel.Value.FIELD:
+				return new AnnotationModel.Value(kind, null, null, (FieldModel) readRef(), null);
+			case AnnotationModel.Value.ARRAY:
+				AnnotationModel.Value[] values = new AnnotationModel.Value[readInt()];
+				for(int i=0; i<values.length; i++)
+					values[i] = readAnnotationValue();
+				return new AnnotationModel.Value(kind, null, null, null, values);
+			default:
+				return new AnnotationModel.Value(kind, readString(), null, null, null);
+		}
+	}
+
+	private ElementModel readHeader(int id) {
+		int kind = readInt();
+		switch(kind) {
+			case PACKAGE: {
+				String name = readString();
+				return new PackageModel(id, name, readBoolean());
+			}
+			case CLASS: {
+				String qualifiedName = readString();
+				String simpleTypeName = readString();
+				String packageName = readString();
+				boolean isInterface = readBoolean();
+				boolean isAnnotationType = readBoolean();
+				boolean isEnum = readBoolean();
+				String name = readString();
+				boolean listed = readBoolean();
+				return new ClassModel(id, name, listed, qualifiedName, simpleTypeName, packageName, isInterface, isAnnotationType, isEnum);
+			}
+			case FIELD: {
+				boolean enumConstant = readBoolean();
+				String qualifiedName = readString();
+				ClassModel cls = readClass();
+				String name = readString();
+				readBoolean();
+				return new FieldModel(id, name, qualifiedName, cls, enumConstant);
+			}
+			case METHOD: {
+				boolean constructor = readBoolean();
+				boolean method = readBoolean();
+				String qualifiedName = readString();
+				ClassModel cls = readClass();
+				String name = readString();
+				readBoolean();
+				return new MethodModel(id, name, qualifiedName, cls, constructor, method);
+			}
+			default:
+				throw new RuntimeException("Corrupt model file: unknown element kind "+kind);
+		}
+	}
+
+	private void readBody(ElementModel e) {
+		int modifierSpecifier = readInt();
+		String modifiers = readString();
+		boolean deprecated = readBoolean();
+		int n = readInt();
+		AnnotationModel[] annotations = n==0 ? AnnotationModel.none : new AnnotationModel[n];
+		for(int i=0; i<n; i++) {
+			String key = readString();
+			TypeModel type = readType();
+			String[] names = readStrings();
+			AnnotationModel.Value[] values = new AnnotationModel.Value[names.length];
+			for(int j=0; j<values.length; j++)
+				values[j] = readAnnotationValue();
+			annotations[i] = new AnnotationModel(key, type, names, values);
+		}
+		e.setModifiers(modifierSpecifier, modifiers, deprecated, annotations);
+
+		if(e instanceof PackageModel) {
+			PackageModel p = (PackageModel) e;
+			p.setDocFilesPath(readString());
+			p.setClasses(readClasses(), readClasses(), readClasses(), readClasses(), readClasses(), readClasses());
+		}
+		else if(e instanceof ClassModel) {
+			ClassModel c = (ClassModel) e;
+			c.setDeclaration(readClass(), readTypes());
+			if(readBoolean()) {
+				c.setDetails(readClass(), readType(), readClasses(), readTypes(), readClasses(),
+						readFields(), readFields(), readMethods(), readMethods());
+				c.setAllMembers(readFields(), readMethods());
+			}
+		}
+		else {
+			MemberModel m = (MemberModel) e;
+			m.setSignature(readString(), readString(), readString(), readString());
+			if(m instanceof FieldModel)
+				((FieldModel) m).setType(readType(), readString());
+			else {
+				MethodModel mm = (MethodModel) m;
+				mm.setDeclaration(readBoolean(), readBoolean(), readBoolean(), readTypes(), readType(),
+						readStrings(), readTypes(), readTypes());
+				mm.setOverridden((MethodModel) readRef());
+			}
+		}
+	}
+
+	private DocModel readModel() {
+		if(readInt()!=magic)
+			throw new RuntimeException("Not a model file");
+		int v = readInt();
+		if(v!=version)
+			throw new RuntimeException(String.format("Unsupported model file version %d, expected %d", v, version));
+
+		stringTable = new String[readInt()];
+		for(int i=0; i<stringTable.length; i++) {
+			int len = readInt();
+			ByteBuffer bytes = in.slice();
+			bytes.limit(len);
+			stringTable[i] = StandardCharsets.UTF_8.decode(bytes).toString();
+			in.position(in.position()+len);
+		}
+
+		elements = new ElementModel[readInt()];
+		for(int i=0; i<elements.length; i++)
+			elements[i] = readHeader(i);
+
+		typeTable = new TypeModel[readInt()];
+		for(int i=0; i<typeTable.length; i++) {
+			int kind = readInt();
+			String key = readString();
+			String name = readString();
+			ClassModel cls = readClass();
+			TypeModel[] arguments = readTypes();
+			TypeModel[] bounds = readTypes();
+			TypeModel[] superBounds = readTypes();
+			typeTable[i] = new TypeModel(key, kind, name, cls, arguments, bounds, superBounds, readString());
+		}
+
+		List<PackageModel> packages = new ArrayList<>();
+		for(int i=readInt(); i>0; i--)
+			packages.add((PackageModel) readRef());
+		List<ClassModel> classes = new ArrayList<>();
+		for(int i=readInt(); i>0; i--)
+			classes.add(readClass());
+		PackageModel overview = (PackageModel) readRef();
+
+		bodyOffsets = new int[elements.length];
+		commentOffsets = new int[elements.length];
+		for(int i=0; i<elements.length; i++) {
+			bodyOffsets[i] = readInt();
+			commentOffsets[i] = readInt();
+		}
+		// turn lengths into offsets, comments follow the last body
+		int offs = in.position();
+		for(int i=0; i<elements.length; i++) {
+			int len = bodyOffsets[i];
+			bodyOffsets[i] = offs;
+			offs += len;
+		}
+		for(int i=0; i<elements.length; i++) {
+			int len = commentOffsets[i];
+			commentOffsets[i] = offs;
+			offs += len;
+		}
+		if(offs!=in.limit())
+			throw new RuntimeException("Corrupt model file: size mismatch");
+
+		ArrayList<ElementModel> list = new ArrayList<>(elements.length);
+		for(ElementModel e : elements) {
+			e.setSource(this);
+			list.add(e);
+		}
+		return new DocModel(list, packages, classes, overview);
+	}
+
+	// Called from the element accessors, possibly by several rendering threads.
+	// Decoding shares the read position, so it is done under the lock.
+
+	synchronized void loadBody(ElementModel e) {
+		if(!e.isBodyPending())
+			return;
+		in.position(bodyOffsets[e.id]);
+		readBody(e);
+		e.bodyDecoded();
+	}
+
+	synchronized void loadComment(ElementModel e) {
+		if(!e.isCommentPending())
+			return;
+		in.position(commentOffsets[e.id]);
+		e.setComment(readComment());
+		e.commentDecoded();
+	}
+
+}
@@ -1,20 +1,30 @@
 package com.xrbpowered.doclet;
 
-import com.sun.javadoc.PackageDoc;
-
 public class Options {
 
 	public static final String baseClassPath = "com/xrbpowered/doclet";
 	public static final String defaultCSS = "resources/doc.css";
 	public static final String defaultJS = "resources/doc.js";
+	public static final String searchJS = "resources/search.js";
 
 	public static String outPath = ".";
 	public static String docTitle = "API Reference";
 	public static String cssFile = null;
 	public static String jsFile = null;
 	public static String overviewPkg = "overview";
+	public static String modelFile = null;
+	public static String statsFile = null;
 	
 	public static boolean date = false;
+	public static boolean compact = false;
+	public static boolean hashAssets = false;
+	public static boolean extFragments = false;
+	public static int threads = 1;
+	public static int indexShardSize = -1;
+	public static int gzipMinSize = -1;
+	public static boolean incremental = false;
+	public static boolean dedupDocFiles = false;
+	public static boolean saveModel = false;
 	
 	public static void loadOptions(String[][] options) {
 		for(String[] opt : options) {
@@ -37,6 +47,41 @@ public class Options {
 				case "-date":
 					date = true;
 					break;
+				case "-compact":
+					compact = true;
+					break;
+				case "-hashassets":
+					hashAssets = true;
+					break;
+				case "-extfragments":
+					extFragments = true;
+					break;
+				case "-incremental":
+					incremental = true;
+					break;
+				case "-dedup":
+					dedupDocFiles = true;
+					break;
+				case "-savemodel":
+					saveModel = true;
+					break;
+				case "-model":
+					modelFile = opt[1];
+					break;
+				case "-stats":
+					statsFile = opt[1];
+					break;
+				case "-shardindex":
+					indexShardSize = Math.max(0, Integer.parseInt(opt[1]));
+					break;
+				case "-gzip":
+					gzipMinSize = Math.max(0, Integer.parseInt(opt[1]));
+					break;
+				case "-threads":
+					threads = Integer.parseInt(opt[1]);
+					if(threads<1)
+						threads = Runtime.getRuntime().availableProcessors();
+					break;
 			}
 		}
 	}
@@ -48,16 +93,27 @@ public class Options {
 			case "-css":
 			case "-js":
 			case "-overview":
+			case "-threads":
+			case "-model":
+			case "-stats":
+			case "-shardindex":
+			case "-gzip":
 				return 2;
 			case "-date":
+			case "-compact":
+			case "-hashassets":
+			case "-extfragments":
+			case "-incremental":
+			case "-dedup":
+			case "-savemodel":
 				return 1;
 			default:
 				return 0;
 		}
 	}
 	
-	public static boolean isOverview(PackageDoc pkg) {
-		return pkg.name().equals(overviewPkg);
+	public static boolean isOverview(String pkg) {
+		return pkg.equals(overviewPkg);
 	}
 
 }
@@ -0,0 +1,76 @@
+package com.xrbpowered.doclet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+public abstract class OutputSink {
+
+	// Destination of all generated files. Paths are relative to the output root and use '/' separators.
+	// The default sink is chosen by -d: a directory, or a single archive if the path ends with .zip or .jar.
+	// Embedding code can install its own sink, e.g. MemorySink, with set() before rendering.
+
+	private static OutputSink sink = null;
+
+	public abstract void write(String path, byte[] data, int length) throws IOException;
+
+	public void write(String path, byte[] data) throws IOException {
+		write(path, data, data.length);
+	}
+
+	public void write(String path, InputStream in) throws IOException {
+		write(path, readAll(in));
+	}
+
+	public abstract boolean exists(String path);
+
+	public abstract boolean delete(String path);
+
+	public File getDirectory() {
+		// only directory sinks support incremental runs and linked doc files
+		return null;
+	}
+
+	public void close() throws IOException {
+	}
+
+	public static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[0x10000];
+		int n;
+		while((n = in.read(buf))>0)
+			out.write(buf, 0, n);
+		return out.toByteArray();
+	}
+
+	public static boolean isArchivePath(String path) {
+		String name = path.toLowerCase();
+		return name.endsWith(".zip") || name.endsWith(".jar");
+	}
+
+	public static synchronized OutputSink get() {
+		if(sink==null)
+			sink = isArchivePath(Options.outPath) ? new ArchiveSink(new File(Options.outPath)) : new DirectorySink(new File(Options.outPath));
+		return sink;
+	}
+
+	public static synchronized void set(OutputSink s) {
+		sink = s;
+	}
+
+	public static synchronized void finish() {
+		if(sink==null)
+			return;
+		try {
+			sink.close();
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+		finally {
+			sink = null;
+		}
+	}
+
+}
@@ -3,10 +3,7 @@ package com.xrbpowered.doclet;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 
-import com.sun.javadoc.ClassDoc;
-import com.sun.javadoc.Doc;
-import com.sun.javadoc.PackageDoc;
-import com.sun.javadoc.Tag;
+import com.xrbpowered.doclet.CommentModel.Token;
 
 import static com.xrbpowered.doclet.WriterUtils.*;
 
@@ -14,9 +11,9 @@ public class PackageDocWriter extends HtmlWriter {
 
 	public static final String filename = "package-summary"; 
 	
-	public final PackageDoc pkg;
+	public final PackageModel pkg;
 	
-	public PackageDocWriter(PackageDoc pkg) {
+	public PackageDocWriter(PackageModel pkg) {
 		this.pkg = pkg;
 	}
 
@@ -24,7 +21,7 @@ public class PackageDocWriter extends HtmlWriter {
 	public void print() {
 		printPageStart(getPackageName());
 		printSince(pkg);
-		printCommentPar(pkg.inlineTags());
+		printCommentPar(pkg.comment().inline);
 		printSeeTags(pkg);
 		
 		out.println("<div class=\"summary\">");
@@ -45,24 +42,35 @@ public class PackageDocWriter extends HtmlWriter {
 		printPageEnd();
 	}
 	
+	@Override
+	protected boolean fingerprint(Fingerprint fp) {
+		fp.addComment(pkg.comment());
+		for(ClassModel[] list : new ClassModel[][] {pkg.interfaces(), pkg.enums(), pkg.ordinaryClasses(), pkg.exceptions(), pkg.errors(), pkg.annotationTypes()}) {
+			for(ClassModel c : list)
+				fp.addClassSummary(c);
+		}
+		return true;
+	}
+	
 	@Override
 	protected boolean smallerTitle() {
 		return true;
 	}
 	
-	private boolean printClassList(String title, ClassDoc[] list) {
-		if(list.length==0)
+	private boolean printClassList(String title, ClassModel[] classes) {
+		if(classes.length==0)
 			return false;
+		ClassModel[] list = Arrays.copyOf(classes, classes.length);
 		Arrays.sort(list, classSort);
 		out.println("<div class=\"summary-item\">");
-		out.printf("<h5>%s</h5>\n", title);
+		out.print("<h5>").print(title).println("</h5>");
 		out.println("<table>");
 		
 		int count = list.length;
 		String[] mods = new String[count];
 		int i = 0;
 		boolean hasMods = false;
-		for(ClassDoc c : list) {
+		for(ClassModel c : list) {
 			mods[i] = Modifier.toString(c.modifierSpecifier() & ~(Modifier.PUBLIC | Modifier.STATIC | Modifier.INTERFACE));
 			if(!mods[i].isEmpty())
 				hasMods = true;
@@ -70,7 +78,7 @@ public class PackageDocWriter extends HtmlWriter {
 		}
 		
 		i=0;
-		for(ClassDoc c : list) {
+		for(ClassModel c : list) {
 			out.print("<tr>");
 			if(hasMods) {
 				out.print("<td class=\"mods\">");
@@ -82,13 +90,16 @@ public class PackageDocWriter extends HtmlWriter {
 				out.println("</td>");
 			}
 			out.println("<td class=\"mods\">");
-			out.printf("<code><span class=\"name\">%s</span>%s", classLink(c, false, null), typeParamsString(c.typeParameters()));
+			out.print("<code><span class=\"name\">");
+			printClassLink(c, false, null);
+			out.print("</span>");
+			printTypeParams(c.typeParameters());
 			out.print("</code>");
 			out.print("</td><td>\n");
-			if(isDeprecated(c))
+			if(c.deprecated())
 				out.print("<span class=\"depr\">Deprecated</span>");
 			else {
-				Tag[] info = c.firstSentenceTags();
+				Token[] info = c.comment().firstSentence;
 				if(info.length>0)
 					printCommentLine(info);
 			}
@@ -103,11 +114,11 @@ public class PackageDocWriter extends HtmlWriter {
 	
 	@Override
 	protected String getPackageName() {
-		return pkg.name();
+		return pkg.name;
 	}
 
 	@Override
-	protected Doc doc() {
+	protected ElementModel doc() {
 		return pkg;
 	}
 
@@ -5,26 +5,20 @@ import static com.xrbpowered.doclet.WriterUtils.*;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.sun.javadoc.Doc;
-import com.sun.javadoc.PackageDoc;
-import com.sun.javadoc.RootDoc;
-import com.sun.javadoc.Tag;
+import com.xrbpowered.doclet.CommentModel.Token;
 
 public class PackageIndexWriter extends HtmlWriter {
 
 	public static final String filename = "index";
 	
-	public final RootDoc root;
-	public final List<PackageDoc> pkgList;
-	public PackageDoc overview = null;
+	public final List<PackageModel> pkgList;
+	public final PackageModel overview;
 	
-	public PackageIndexWriter(RootDoc root) {
-		this.root = root;
-		pkgList = new ArrayList<>(root.specifiedPackages().length);
-		for(PackageDoc pkg : root.specifiedPackages()) {
-			if(Options.isOverview(pkg))
-				overview = pkg;
-			else
+	public PackageIndexWriter(DocModel model) {
+		overview = model.overview;
+		pkgList = new ArrayList<>(model.packages.size());
+		for(PackageModel pkg : model.packages) {
+			if(pkg!=overview)
 				pkgList.add(pkg);
 		}
 		pkgList.sort(packageSort);
@@ -41,7 +35,7 @@ public class PackageIndexWriter extends HtmlWriter {
 		out.println("<div class=\"infocard\"><p><a href=\"allclasses.html\">List of all classes</a></p></div>");
 		
 		if(overview!=null) {
-			printCommentPar(overview.inlineTags());
+			printCommentPar(overview.comment().inline);
 			printSeeTags(overview);
 		}
 
@@ -54,13 +48,13 @@ public class PackageIndexWriter extends HtmlWriter {
 		else {
 			PackageLink link = PackageLink.root();
 			out.println("<table>");
-			for(PackageDoc pkg : pkgList) {
+			for(PackageModel pkg : pkgList) {
 				out.print("<tr><td>");
-				out.printf("<a href=\"%s%s.html\" title=\"%s\">%s</a>",
-						link.relativeLink(pkg.name()), PackageDocWriter.filename, pkg.name(), pkg.name());
+				out.openTag("a").startAttr("href").print(link.relativeLink(pkg.name)).print(PackageDocWriter.filename).print(".html").endAttr();
+				out.titleAttr(pkg.name, pkg.name, true).closeTag().print(pkg.name).endTag("a");
 				out.println("</td><td>");
-				Tag[] info = pkg.firstSentenceTags();
-				if(info!=null && info.length>0)
+				Token[] info = pkg.comment().firstSentence;
+				if(info.length>0)
 					printCommentLine(info);
 				out.println("</td></tr>");
 			}
@@ -71,7 +65,16 @@ public class PackageIndexWriter extends HtmlWriter {
 	}
 
 	@Override
-	protected Doc doc() {
+	protected boolean fingerprint(Fingerprint fp) {
+		if(overview!=null)
+			fp.addComment(overview.comment());
+		for(PackageModel pkg : pkgList)
+			fp.addPackageSummary(pkg);
+		return true;
+	}
+
+	@Override
+	protected ElementModel doc() {
 		return null;
 	}
 
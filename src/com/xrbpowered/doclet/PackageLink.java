@@ -1,91 +1,105 @@
 package com.xrbpowered.doclet;
 
-import java.io.File;
-import java.util.HashMap;
-
-import com.sun.javadoc.ClassDoc;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PackageLink {
 
-	private static HashMap<String, PackageLink> packages = new HashMap<>();
-	
+	private static ConcurrentHashMap<String, PackageLink> packages = new ConcurrentHashMap<>();
+	private static final PackageLink root = new PackageLink("", null);
+	static {
+		packages.put("", root);
+	}
+
 	public final String pkg;
-	private HashMap<String, String> relativeLinks = new HashMap<>();
+	public final PackageLink parent;
+	public final int depth;
+	public final String path;
 
-	public PackageLink(String pkg) {
+	private ConcurrentHashMap<String, String> relativeLinks = new ConcurrentHashMap<>();
+	private ConcurrentHashMap<ClassModel, String> classLinks = new ConcurrentHashMap<>();
+
+	private PackageLink(String pkg, PackageLink parent) {
 		this.pkg = pkg;
+		this.parent = parent;
+		if(parent==null) {
+			this.depth = 0;
+			this.path = "";
+		}
+		else {
+			this.depth = parent.depth+1;
+			this.path = parent.path+pkg.substring(pkg.lastIndexOf('.')+1)+"/";
+		}
 	}
-	
+
 	public String relativeLink(String dst) {
 		if(dst==null)
 			dst = "";
 		String link = relativeLinks.get(dst);
 		if(link==null) {
-			link = calcLink(pkg, dst);
+			link = calcLink(this, forPackage(dst));
 			relativeLinks.put(dst, link);
 		}
 		return link;
 	}
-	
-	public String relativeLink(ClassDoc cls) {
-		return String.format("%s%s.html", relativeLink(cls.containingPackage().name()), cls.name());
+
+	public String relativeLink(ClassModel cls) {
+		String link = classLinks.get(cls);
+		if(link==null) {
+			link = relativeLink(cls.packageName)+cls.name+".html";
+			classLinks.put(cls, link);
+		}
+		return link;
 	}
-	
+
 	public String rootLink() {
 		return relativeLink("");
 	}
-	
+
 	public static PackageLink forPackage(String pkg) {
-		if(pkg==null)
-			pkg = "";
+		if(pkg==null || pkg.isEmpty())
+			return root;
 		PackageLink link = packages.get(pkg);
 		if(link==null) {
-			link = new PackageLink(pkg);
-			packages.put(pkg, link);
+			int sep = pkg.lastIndexOf('.');
+			PackageLink parent = forPackage(sep<0 ? "" : pkg.substring(0, sep));
+			link = new PackageLink(pkg, parent);
+			PackageLink prev = packages.putIfAbsent(pkg, link);
+			if(prev!=null)
+				link = prev;
 		}
 		return link;
 	}
 
 	public static PackageLink root() {
-		return forPackage("");
+		return root;
 	}
-	
-	public static File getPackageDir(String pkg) {
-		return new File(Options.outPath, root().relativeLink(pkg));
+
+	public static void init(DocModel model) {
+		// build the package tree upfront, so that rendering threads mostly read it
+		for(PackageModel pkg : model.packages)
+			forPackage(pkg.name);
+		for(ClassModel cls : model.classes)
+			forPackage(cls.packageName);
 	}
-	
-	public static int commonPrefixLength(String s1, String s2) {
-		int n = Math.min(s1.length(), s2.length());
-		for(int i=0; i<n; i++) {
-			if(s1.charAt(i)!=s2.charAt(i))
-				return i;
+
+	public static PackageLink commonAncestor(PackageLink a, PackageLink b) {
+		while(a.depth>b.depth)
+			a = a.parent;
+		while(b.depth>a.depth)
+			b = b.parent;
+		while(a!=b) {
+			a = a.parent;
+			b = b.parent;
 		}
-		return n;
+		return a;
 	}
-	
-	private static String calcLink(String src, String dst) {
+
+	private static String calcLink(PackageLink src, PackageLink dst) {
+		PackageLink common = commonAncestor(src, dst);
 		StringBuilder link = new StringBuilder();
-		
-		int slen = src.length();
-		int dlen = dst.length();
-		
-		int pref = commonPrefixLength(src, dst);
-		if(pref==slen && pref==dlen)
-			return "";
-		
-		if(pref<slen) {
-			int i=pref;
-			if(src.charAt(pref)=='.') i++;
-			while(i>=0) {
-				link.append("../");
-				i = src.indexOf('.', i+1);
-			}
-		}
-		if(pref<dlen) {
-			if(dst.charAt(pref)=='.') pref++;
-			link.append(dst.substring(pref).replace('.', '/'));
-			link.append("/");
-		}
+		for(int i=common.depth; i<src.depth; i++)
+			link.append("../");
+		link.append(dst.path, common.path.length(), dst.path.length());
 		return link.toString();
 	}
 
@@ -0,0 +1,74 @@
+package com.xrbpowered.doclet;
+
+public class PackageModel extends ElementModel {
+
+	private String docFilesPath = null;
+
+	private ClassModel[] interfaces = ClassModel.none;
+	private ClassModel[] enums = ClassModel.none;
+	private ClassModel[] ordinaryClasses = ClassModel.none;
+	private ClassModel[] exceptions = ClassModel.none;
+	private ClassModel[] errors = ClassModel.none;
+	private ClassModel[] annotationTypes = ClassModel.none;
+
+	public PackageModel(int id, String name, boolean listed) {
+		super(id, name, listed);
+	}
+
+	void setDocFilesPath(String docFilesPath) {
+		checkMutable();
+		this.docFilesPath = docFilesPath;
+	}
+
+	void setClasses(ClassModel[] interfaces, ClassModel[] enums, ClassModel[] ordinaryClasses,
+			ClassModel[] exceptions, ClassModel[] errors, ClassModel[] annotationTypes) {
+		checkMutable();
+		this.interfaces = interfaces;
+		this.enums = enums;
+		this.ordinaryClasses = ordinaryClasses;
+		this.exceptions = exceptions;
+		this.errors = errors;
+		this.annotationTypes = annotationTypes;
+	}
+
+	public String docFilesPath() {
+		loadBody();
+		return docFilesPath;
+	}
+
+	public ClassModel[] interfaces() {
+		loadBody();
+		return interfaces;
+	}
+
+	public ClassModel[] enums() {
+		loadBody();
+		return enums;
+	}
+
+	public ClassModel[] ordinaryClasses() {
+		loadBody();
+		return ordinaryClasses;
+	}
+
+	public ClassModel[] exceptions() {
+		loadBody();
+		return exceptions;
+	}
+
+	public ClassModel[] errors() {
+		loadBody();
+		return errors;
+	}
+
+	public ClassModel[] annotationTypes() {
+		loadBody();
+		return annotationTypes;
+	}
+
+	@Override
+	public String qualifiedName() {
+		return name;
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.xrbpowered.doclet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+public class PageOutput {
+
+	private static final ThreadLocal<PageOutput> local = new ThreadLocal<PageOutput>() {
+		@Override
+		protected PageOutput initialValue() {
+			return new PageOutput();
+		}
+	};
+
+	private final HtmlOut out = new HtmlOut();
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private ByteBuffer bytes = ByteBuffer.allocate(0x40000);
+
+	private PageOutput() {
+	}
+
+	public HtmlOut begin() {
+		out.clear();
+		return out;
+	}
+
+	public ByteBuffer encode() throws CharacterCodingException {
+		CharBuffer chars = CharBuffer.wrap(out.buffer());
+		encoder.reset();
+		bytes.clear();
+		for(;;) {
+			CoderResult res = encoder.encode(chars, bytes, true);
+			if(res.isUnderflow())
+				break;
+			else if(res.isOverflow()) {
+				ByteBuffer grown = ByteBuffer.allocate(bytes.capacity()*2);
+				bytes.flip();
+				grown.put(bytes);
+				bytes = grown;
+			}
+			else
+				res.throwException();
+		}
+		encoder.flush(bytes);
+		bytes.flip();
+		return bytes;
+	}
+
+	public int write(String path) throws IOException {
+		ByteBuffer buf = encode();
+		int size = buf.remaining();
+		OutputSink.get().write(path, buf.array(), size);
+		GzipFiles.submit(path, buf.array(), size);
+		return size;
+	}
+
+	public static PageOutput local() {
+		return local.get();
+	}
+
+}
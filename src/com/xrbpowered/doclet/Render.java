@@ -0,0 +1,43 @@
+package com.xrbpowered.doclet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class Render {
+
+	// Re-renders the site from a model saved with -savemodel, without running javadoc.
+	// Takes the same options as the doclet, e.g. -d <outpath> -css <fullpath> -model <file>
+
+	public static void main(String[] args) {
+		ArrayList<String[]> options = new ArrayList<>();
+		for(int i=0; i<args.length;) {
+			int len = Options.optionLength(args[i]);
+			if(len==0 || i+len>args.length) {
+				System.err.println("Invalid option: "+args[i]);
+				System.exit(1);
+			}
+			options.add(Arrays.copyOfRange(args, i, i+len));
+			i += len;
+		}
+		Stats.Timer t = Stats.start();
+		Options.loadOptions(options.toArray(new String[options.size()][]));
+		Stats.stop(t, Stats.options);
+		File file = ModelFile.getFile();
+		if(!file.exists()) {
+			System.err.println("Model file not found: "+file.getPath());
+			System.exit(1);
+		}
+
+		Doclet.printNotice("Using XRB powered custom doclet.");
+		FileUtils.createRoot();
+		FileUtils.startCopying();
+		FileUtils.copyStyleFiles();
+		Doclet.printNotice("Loading documentation model from "+file.getPath());
+		t = Stats.start();
+		DocModel model = ModelFile.load(file);
+		Stats.stop(t, Stats.model);
+		Doclet.render(model);
+	}
+
+}
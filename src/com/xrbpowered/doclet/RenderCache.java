@@ -0,0 +1,61 @@
+package com.xrbpowered.doclet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RenderCache {
+
+	public static final int maxEntries = 0x4000;
+
+	private static class LruMap extends LinkedHashMap<String, String> {
+		private static final long serialVersionUID = 1L;
+
+		public LruMap() {
+			super(0x1000, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size()>maxEntries;
+		}
+	}
+
+	private static final LruMap cache = new LruMap();
+
+	private static AtomicLong hits = new AtomicLong();
+	private static AtomicLong misses = new AtomicLong();
+
+	public static String get(String key) {
+		String html;
+		synchronized(cache) {
+			html = cache.get(key);
+		}
+		(html==null ? misses : hits).incrementAndGet();
+		return html;
+	}
+
+	public static void put(String key, String html) {
+		synchronized(cache) {
+			cache.put(key, html);
+		}
+	}
+
+	public static void clear() {
+		// cached HTML is only valid for the model and options of one render
+		synchronized(cache) {
+			cache.clear();
+		}
+		hits.set(0L);
+		misses.set(0L);
+	}
+
+	public static long getHits() {
+		return hits.get();
+	}
+
+	public static long getMisses() {
+		return misses.get();
+	}
+
+}
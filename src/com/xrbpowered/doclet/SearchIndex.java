@@ -0,0 +1,199 @@
+package com.xrbpowered.doclet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+public abstract class SearchIndex {
+
+	public static final String filename = "search-index.js";
+
+	// Names of packages, classes and members sorted case-insensitively and front-coded, one entry per line:
+	// shared prefix length | name suffix | kind | package or class index [| anchor | signature]
+	// Member anchors are stored without the leading member name, or with '#' if they do not start with it.
+	// Default constructors have no anchor.
+
+	private static class Entry {
+		public final String name;
+		public final String key;
+		public final char kind;
+		public final int owner;
+		public final String ownerName;
+		public final String anchor;
+		public final String signature;
+
+		public Entry(String name, char kind, int owner, String ownerName, String anchor, String signature) {
+			this.name = name;
+			this.key = name.toLowerCase(Locale.ROOT);
+			this.kind = kind;
+			this.owner = owner;
+			this.ownerName = ownerName;
+			this.anchor = anchor;
+			this.signature = signature;
+		}
+
+		public int rank() {
+			switch(kind) {
+				case 'p':
+					return 0;
+				case 'c':
+				case 'i':
+				case 'e':
+				case 'a':
+					return 1;
+				default:
+					return 2;
+			}
+		}
+	}
+
+	private static final Comparator<Entry> entrySort = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry o1, Entry o2) {
+			int res = o1.key.compareTo(o2.key);
+			if(res==0)
+				res = Integer.compare(o1.rank(), o2.rank());
+			if(res==0)
+				res = o1.ownerName.compareTo(o2.ownerName);
+			if(res==0)
+				res = o1.name.compareTo(o2.name);
+			if(res==0)
+				res = Character.compare(o1.kind, o2.kind);
+			if(res==0 && o1.signature!=null)
+				res = o1.signature.compareTo(o2.signature);
+			return res;
+		}
+	};
+
+	private static List<String> packages = new ArrayList<>();
+	private static HashMap<String, Integer> packageIndex = new HashMap<>();
+	private static List<String> classes = new ArrayList<>();
+	private static List<Entry> entries = new ArrayList<>();
+
+	private static int packageIndex(String name) {
+		Integer index = packageIndex.get(name);
+		if(index==null) {
+			index = packages.size();
+			packages.add(name);
+			packageIndex.put(name, index);
+		}
+		return index;
+	}
+
+	private static char classKind(ClassModel cls) {
+		if(cls.isAnnotationType)
+			return 'a';
+		else if(cls.isEnum)
+			return 'e';
+		else if(cls.isInterface)
+			return 'i';
+		else
+			return 'c';
+	}
+
+	private static void addMembers(int owner, ClassModel cls, MemberModel[] members, char kind) {
+		for(MemberModel mem : members) {
+			String anchor = mem.anchor().startsWith(mem.name) ? mem.anchor().substring(mem.name.length()) : "#"+mem.anchor();
+			if(mem instanceof MethodModel && ((MethodModel) mem).defaultConstructor())
+				anchor = "#"; // not documented on the page, link to the class
+			entries.add(new Entry(mem.name, kind, owner, cls.qualifiedName, anchor, kind=='f' ? null : mem.flatSignature()));
+		}
+	}
+
+	private static void collect(DocModel model) {
+		for(PackageModel pkg : model.packages) {
+			if(pkg.listed && pkg!=model.overview)
+				entries.add(new Entry(pkg.name, 'p', packageIndex(pkg.name), "", null, null));
+		}
+		for(ClassModel cls : model.classes) {
+			int owner = classes.size();
+			classes.add(packageIndex(cls.packageName)+"|"+cls.name);
+			entries.add(new Entry(cls.simpleTypeName, classKind(cls), owner, cls.qualifiedName, null, null));
+			addMembers(owner, cls, cls.enumConstants(), 'f');
+			addMembers(owner, cls, cls.fields(), 'f');
+			addMembers(owner, cls, cls.constructors(), 'k');
+			addMembers(owner, cls, cls.methods(), 'm');
+		}
+		entries.sort(entrySort);
+	}
+
+	public static void printString(HtmlOut out, String s) {
+		out.print('\"');
+		int n = s.length();
+		for(int i=0; i<n; i++) {
+			char c = s.charAt(i);
+			if(c=='\"' || c=='\\')
+				out.print('\\').print(c);
+			else if(c=='\n')
+				out.print("\\n");
+			else if(c<' ' || c=='\u2028' || c=='\u2029')
+				out.print(String.format("\\u%04x", (int) c));
+			else
+				out.print(c);
+		}
+		out.print('\"');
+	}
+
+	private static void printArray(HtmlOut out, String name, List<String> list) {
+		out.print('\"').print(name).print("\":[");
+		for(int i=0; i<list.size(); i++) {
+			if(i>0) out.print(',');
+			printString(out, list.get(i));
+		}
+		out.println("],");
+	}
+
+	private static String entryLines() {
+		StringBuilder sb = new StringBuilder();
+		String prev = "";
+		for(Entry e : entries) {
+			int shared = 0;
+			int max = Math.min(prev.length(), e.name.length());
+			while(shared<max && prev.charAt(shared)==e.name.charAt(shared))
+				shared++;
+			if(sb.length()>0)
+				sb.append('\n');
+			sb.append(shared).append('|').append(e.name, shared, e.name.length());
+			sb.append('|').append(e.kind).append('|').append(e.owner);
+			if(e.anchor!=null) {
+				sb.append('|').append(e.anchor);
+				if(e.signature!=null)
+					sb.append('|').append(e.signature);
+			}
+			prev = e.name;
+		}
+		return sb.toString();
+	}
+
+	public static void write(DocModel model) {
+		Doclet.printNotice("... Writing search index");
+		Stats.Timer t = Stats.start();
+		collect(model);
+		try {
+			PageOutput page = PageOutput.local();
+			HtmlOut out = page.begin();
+			out.println("searchIndex({");
+			printArray(out, "packages", packages);
+			printArray(out, "classes", classes);
+			out.print("\"entries\":");
+			printString(out, entryLines());
+			out.println("\n});");
+			int bytes = page.write(filename);
+			Stats.page(filename, Stats.searchIndex, null, bytes, t);
+			Doclet.printNotice(String.format("Indexed %d names (%d bytes).", entries.size(), bytes));
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+		finally {
+			packages.clear();
+			packageIndex.clear();
+			classes.clear();
+			entries.clear();
+		}
+	}
+
+}
@@ -0,0 +1,284 @@
+package com.xrbpowered.doclet;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public abstract class Stats {
+
+	// Timings for -stats. Phases may run on several threads: wall time is from the first start to the last end,
+	// work time is the sum of all timed tasks, CPU time is the sum of their thread CPU time.
+
+	public static final int slowestClasses = 20;
+
+	public static final String options = "options";
+	public static final String model = "model";
+	public static final String saveModel = "saveModel";
+	public static final String assetCopy = "assetCopy";
+	public static final String manifest = "manifest";
+	public static final String indexPages = "indexPages";
+	public static final String searchIndex = "searchIndex";
+	public static final String extFragments = "extFragments";
+	public static final String packagePages = "packagePages";
+	public static final String classPages = "classPages";
+	public static final String gzip = "gzip";
+	public static final String finish = "finish";
+
+	public static class Timer {
+		public final long wall = System.nanoTime();
+		public final long cpu = cpuTime();
+	}
+
+	private static class Phase {
+		public long start = Long.MAX_VALUE;
+		public long end = Long.MIN_VALUE;
+		public long work = 0L;
+		public long cpu = 0L;
+		public int count = 0;
+		public int skipped = 0;
+	}
+
+	private static class Page {
+		public final String path;
+		public final ClassModel cls;
+		public final int bytes;
+		public final long wall;
+		public final long cpu;
+
+		public Page(String path, ClassModel cls, int bytes, long wall, long cpu) {
+			this.path = path;
+			this.cls = cls;
+			this.bytes = bytes;
+			this.wall = wall;
+			this.cpu = cpu;
+		}
+	}
+
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	private static long startTime = System.nanoTime();
+
+	private static LinkedHashMap<String, Phase> phases = new LinkedHashMap<>();
+	private static ConcurrentLinkedQueue<Page> pages = new ConcurrentLinkedQueue<>();
+
+	public static boolean isEnabled() {
+		return Options.statsFile!=null;
+	}
+
+	private static long cpuTime() {
+		return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : 0L;
+	}
+
+	public static Timer start() {
+		return new Timer();
+	}
+
+	private static Phase phase(String name) {
+		Phase p = phases.get(name);
+		if(p==null) {
+			p = new Phase();
+			phases.put(name, p);
+		}
+		return p;
+	}
+
+	public static void stop(Timer t, String name) {
+		if(isEnabled())
+			record(t, name, System.nanoTime(), cpuTime());
+	}
+
+	private static void record(Timer t, String name, long wall, long cpu) {
+		synchronized(phases) {
+			Phase p = phase(name);
+			p.start = Math.min(p.start, t.wall);
+			p.end = Math.max(p.end, wall);
+			p.work += wall-t.wall;
+			p.cpu += cpu-t.cpu;
+			p.count++;
+		}
+	}
+
+	private static String phaseOf(HtmlWriter writer) {
+		if(writer instanceof ExtFragmentWriter)
+			return extFragments;
+		else if(writer instanceof ClassDocWriter)
+			return classPages;
+		else if(writer instanceof PackageDocWriter)
+			return packagePages;
+		else
+			return indexPages;
+	}
+
+	public static void page(String path, String name, ClassModel cls, int bytes, Timer t) {
+		if(!isEnabled())
+			return;
+		long wall = System.nanoTime();
+		long cpu = cpuTime();
+		record(t, name, wall, cpu);
+		pages.add(new Page(path, cls, bytes, wall-t.wall, cpu-t.cpu));
+	}
+
+	public static void page(HtmlWriter writer, int bytes, Timer t) {
+		if(!isEnabled())
+			return;
+		String name = phaseOf(writer);
+		ClassModel cls = name.equals(classPages) ? ((ClassDocWriter) writer).cls : null;
+		page(writer.getPagePath(), name, cls, bytes, t);
+	}
+
+	public static void skip(HtmlWriter writer) {
+		if(!isEnabled())
+			return;
+		synchronized(phases) {
+			phase(phaseOf(writer)).skipped++;
+		}
+	}
+
+	public static void reset() {
+		synchronized(phases) {
+			phases.clear();
+		}
+		pages.clear();
+		startTime = System.nanoTime();
+	}
+
+	private static String ms(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos/1000000.0);
+	}
+
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder();
+		sb.append('\"');
+		for(int i=0; i<s.length(); i++) {
+			char c = s.charAt(i);
+			if(c=='\"' || c=='\\')
+				sb.append('\\').append(c);
+			else if(c<' ')
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.append('\"').toString();
+	}
+
+	private static void printCache(StringBuilder sb, String name, long hits, long misses, boolean last) {
+		long total = hits+misses;
+		sb.append("\t\t").append(quote(name)).append(": {\"hits\": ").append(hits).append(", \"misses\": ").append(misses);
+		sb.append(", \"hitRate\": ").append(total==0 ? "null" : String.format(Locale.ROOT, "%.4f", hits/(double) total));
+		sb.append(last ? "}\n" : "},\n");
+	}
+
+	public static void write(DocModel docModel) {
+		if(!isEnabled())
+			return;
+		long end = System.nanoTime();
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		sb.append("\t\"date\": ").append(quote(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(Calendar.getInstance().getTime()))).append(",\n");
+		sb.append("\t\"threads\": ").append(Options.threads).append(",\n");
+		int listedPackages = 0;
+		for(PackageModel pkg : docModel.packages) {
+			if(pkg.listed)
+				listedPackages++;
+		}
+		sb.append("\t\"packages\": ").append(listedPackages).append(",\n");
+		sb.append("\t\"classes\": ").append(docModel.classes.size()).append(",\n");
+
+		// time before the doclet started is spent in javadoc itself
+		sb.append("\t\"jvmUptimeMs\": ").append(ManagementFactory.getRuntimeMXBean().getUptime()).append(",\n");
+		sb.append("\t\"wallMs\": ").append(ms(end-startTime)).append(",\n");
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if(os instanceof com.sun.management.OperatingSystemMXBean)
+			sb.append("\t\"processCpuMs\": ").append(ms(((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime())).append(",\n");
+
+		sb.append("\t\"phases\": {\n");
+		synchronized(phases) {
+			int i = 0;
+			for(Map.Entry<String, Phase> e : phases.entrySet()) {
+				Phase p = e.getValue();
+				sb.append("\t\t").append(quote(e.getKey())).append(": {");
+				sb.append("\"wallMs\": ").append(p.count>0 ? ms(p.end-p.start) : "0.000");
+				sb.append(", \"workMs\": ").append(ms(p.work));
+				sb.append(", \"cpuMs\": ").append(ms(p.cpu));
+				sb.append(", \"count\": ").append(p.count);
+				if(p.skipped>0)
+					sb.append(", \"skipped\": ").append(p.skipped);
+				sb.append(++i<phases.size() ? "},\n" : "}\n");
+			}
+		}
+		sb.append("\t},\n");
+
+		ArrayList<Page> pageList = new ArrayList<>(pages);
+		long totalBytes = 0L;
+		int skipped = 0;
+		for(Page page : pageList)
+			totalBytes += page.bytes;
+		synchronized(phases) {
+			for(Phase p : phases.values())
+				skipped += p.skipped;
+		}
+		sb.append("\t\"pageCount\": ").append(pageList.size()).append(",\n");
+		sb.append("\t\"pageBytes\": ").append(totalBytes).append(",\n");
+
+		sb.append("\t\"caches\": {\n");
+		printCache(sb, "renderCache", RenderCache.getHits(), RenderCache.getMisses(), false);
+		if(Options.incremental)
+			printCache(sb, "incrementalPages", skipped, pageList.size(), false);
+		printCache(sb, "unchangedFiles", FileUtils.getSkippedFiles(), FileUtils.getCopiedFiles(), true);
+		sb.append("\t},\n");
+
+		pageList.sort((p1, p2) -> Long.compare(p2.wall, p1.wall));
+		sb.append("\t\"slowestClasses\": [");
+		int n = 0;
+		for(Page page : pageList) {
+			if(page.cls==null)
+				continue;
+			if(n>=slowestClasses)
+				break;
+			ClassModel cls = page.cls;
+			sb.append(n++>0 ? ",\n" : "\n");
+			sb.append("\t\t{\"class\": ").append(quote(cls.qualifiedName));
+			sb.append(", \"wallMs\": ").append(ms(page.wall)).append(", \"cpuMs\": ").append(ms(page.cpu));
+			sb.append(", \"bytes\": ").append(page.bytes);
+			sb.append(", \"fields\": ").append(cls.fields().length).append(", \"methods\": ").append(cls.methods().length);
+			sb.append(", \"constructors\": ").append(cls.constructors().length);
+			sb.append(", \"allFields\": ").append(cls.allFields().length).append(", \"allMethods\": ").append(cls.allMethods().length);
+			sb.append('}');
+		}
+		sb.append("\n\t],\n");
+
+		pageList.sort((p1, p2) -> p1.path.compareTo(p2.path));
+		sb.append("\t\"pages\": [");
+		n = 0;
+		for(Page page : pageList) {
+			sb.append(n++>0 ? ",\n" : "\n");
+			sb.append("\t\t{\"path\": ").append(quote(page.path)).append(", \"bytes\": ").append(page.bytes);
+			sb.append(", \"wallMs\": ").append(ms(page.wall)).append(", \"cpuMs\": ").append(ms(page.cpu)).append('}');
+		}
+		sb.append("\n\t]\n");
+		sb.append("}\n");
+
+		File file = new File(Options.statsFile);
+		try {
+			File dir = file.getAbsoluteFile().getParentFile();
+			if(dir!=null && !dir.exists())
+				dir.mkdirs();
+			Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+			Doclet.printNotice("Statistics written to "+file.getPath());
+		}
+		catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+package com.xrbpowered.doclet;
+
+public class TypeModel {
+
+	public static final TypeModel[] none = {};
+
+	public static final int PRIMITIVE = 0;
+	public static final int CLASS = 1;
+	public static final int TYPEVAR = 2;
+	public static final int WILDCARD = 3;
+
+	// types are interned by key: the full type string, plus bounds for type variable declarations
+	public final String key;
+	public final int kind;
+	public final String name;
+	public final ClassModel cls;
+	public final TypeModel[] arguments;
+	public final TypeModel[] bounds;
+	public final TypeModel[] superBounds;
+	public final String dimension;
+
+	public TypeModel(String key, int kind, String name, ClassModel cls, TypeModel[] arguments, TypeModel[] bounds, TypeModel[] superBounds, String dimension) {
+		this.key = key;
+		this.kind = kind;
+		this.name = name;
+		this.cls = cls;
+		this.arguments = arguments;
+		this.bounds = bounds;
+		this.superBounds = superBounds;
+		this.dimension = dimension;
+	}
+
+	@Override
+	public String toString() {
+		return key;
+	}
+
+}
@@ -12,6 +12,10 @@ function scrollUp() {
 }
 
 function toggleExt(ref) {
+	if(ref.dataset.ext) {
+		loadExtRows(ref);
+		return;
+	}
 	var el = ref
 	while((el = el.parentElement) && el.tagName=="table");
 	if(el) {
@@ -21,4 +25,210 @@ function toggleExt(ref) {
 			row.classList.toggle("hide");
 		}
 	}
-}
\ No newline at end of file
+}
+
+// shared rows of members inherited from external classes: ext/*.js scripts call extRows()
+
+var extLoaded = {};
+
+function extRows(key, sections) {
+	extLoaded[key] = sections;
+}
+
+function loadExtRows(ref) {
+	if(ref.dataset.loading)
+		return;
+	var keys = ref.dataset.ext.split(" ");
+	var missing = keys.filter(function(key) { return !(key in extLoaded); });
+	if(missing.length>0) {
+		// scripts also load from file:// where requests for documents are blocked
+		ref.dataset.loading = "1";
+		var left = missing.length;
+		var onload = function() {
+			if(--left==0) {
+				delete ref.dataset.loading;
+				loadExtRows(ref);
+			}
+		};
+		for(var key of missing) {
+			var s = document.createElement("script");
+			s.src = docRoot+"ext/"+key+".js";
+			s.dataset.key = key;
+			s.onload = onload;
+			s.onerror = function() {
+				extLoaded[this.dataset.key] = {};
+				onload();
+			};
+			document.head.appendChild(s);
+		}
+		return;
+	}
+
+	var hide = {};
+	if(ref.dataset.hide) {
+		for(var r of ref.dataset.hide.split(" "))
+			hide[r] = true;
+	}
+	var body = document.createElement("tbody");
+	body.innerHTML = keys.map(function(key) { return extLoaded[key][ref.dataset.section] || ""; }).join("");
+	var rows = Array.from(body.rows).filter(function(row) { return !hide[row.dataset.r]; });
+	rows.sort(function(a, b) { return a.dataset.r-b.dataset.r; });
+	for(var a of body.querySelectorAll("a[href]"))
+		a.setAttribute("href", docRoot+a.getAttribute("href"));
+	var next = ref.nextSibling;
+	for(var i=0; i<rows.length; i++) {
+		if(i==0)
+			rows[i].classList.add("sep");
+		ref.parentNode.insertBefore(rows[i], next);
+	}
+	delete ref.dataset.ext;
+	toggleExt(ref);
+}
+
+// search: search.js and search-index.js are loaded on first use, queries run in a worker if possible
+
+var docRoot = document.currentScript ? document.currentScript.src.replace(/[^\/]*$/, "") : "";
+var searchScript = document.currentScript && document.currentScript.dataset.search || "search.js";
+var searchLimit = 50;
+var searchWorker = null;
+var searchLoading = false;
+var searchReady = false;
+var searchId = 0;
+var searchLast = "";
+
+function searchStart() {
+	if(searchWorker || searchLoading || searchReady)
+		return;
+	try {
+		searchWorker = new Worker(docRoot+searchScript);
+		searchWorker.onmessage = function(e) {
+			if(e.data.id==searchId)
+				showSearchResults(e.data.results);
+		};
+		searchWorker.onerror = function(e) {
+			e.preventDefault();
+			searchWorker.terminate();
+			searchWorker = null;
+			searchLoadInPage();
+		};
+	}
+	catch(err) {
+		// e.g. pages opened from file://
+		searchWorker = null;
+		searchLoadInPage();
+	}
+}
+
+function searchLoadScript(src, onload) {
+	var s = document.createElement("script");
+	s.src = docRoot+src;
+	s.onload = onload;
+	document.head.appendChild(s);
+}
+
+function searchLoadInPage() {
+	searchLoading = true;
+	searchLoadScript(searchScript, function() {
+		searchLoadScript("search-index.js", function() {
+			searchLoading = false;
+			searchReady = true;
+			searchQuery(searchLast);
+		});
+	});
+}
+
+function searchQuery(query) {
+	searchLast = query;
+	searchId++;
+	if(searchWorker)
+		searchWorker.postMessage({ id: searchId, query: query, limit: searchLimit });
+	else if(searchReady)
+		showSearchResults(searchFind(query, searchLimit));
+}
+
+function searchInput(input) {
+	searchStart();
+	searchQuery(input.value);
+}
+
+function searchKey(e) {
+	if(e.key=="Enter") {
+		var first = document.querySelector("#searchResults a");
+		if(first)
+			window.location.href = first.href;
+	}
+	else if(e.key=="Escape") {
+		e.target.value = "";
+		searchQuery("");
+	}
+}
+
+function showSearchResults(results) {
+	var list = document.getElementById("searchResults");
+	list.innerHTML = "";
+	for(var r of results) {
+		var a = document.createElement("a");
+		a.href = docRoot+r.path;
+		a.className = "kind-"+r.kind;
+		a.title = r.info;
+		a.textContent = r.label;
+		var info = document.createElement("span");
+		info.textContent = r.info;
+		a.appendChild(info);
+		list.appendChild(a);
+	}
+	list.style.display = results.length>0 ? "block" : "none";
+}
+
+function hideSearchResults() {
+	setTimeout(function() {
+		document.getElementById("searchResults").style.display = "none";
+	}, 200);
+}
+
+// sharded class index: the landing page loads shard pages one after another
+
+var classFilter = "";
+
+function filterClassIndex(filter) {
+	classFilter = filter.trim().toLowerCase();
+	var index = document.getElementById("classIndex");
+	for(var a of index.getElementsByTagName("a"))
+		filterClassLink(a);
+}
+
+function filterClassLink(a) {
+	var show = classFilter.length==0 || a.textContent.toLowerCase().indexOf(classFilter)>=0 || a.title.toLowerCase().indexOf(classFilter)>=0;
+	a.style.display = show ? "" : "none";
+	a.nextSibling.style.display = show ? "" : "none";
+}
+
+function loadClassIndex(index, shards) {
+	if(shards.length==0)
+		return;
+	var req = new XMLHttpRequest();
+	req.onload = function() {
+		var list = req.responseXML ? req.responseXML.querySelector("div.index p") : null;
+		if(list) {
+			var p = document.importNode(list, true);
+			for(var a of p.getElementsByTagName("a"))
+				filterClassLink(a);
+			index.appendChild(p);
+		}
+		loadClassIndex(index, shards.slice(1));
+	};
+	req.onerror = function() {
+		// e.g. pages opened from file://, shard links are still there
+		index.style.display = "none";
+		document.getElementById("classFilter").parentElement.style.display = "none";
+	};
+	req.open("GET", shards[0]);
+	req.responseType = "document";
+	req.send();
+}
+
+document.addEventListener("DOMContentLoaded", function() {
+	var index = document.getElementById("classIndex");
+	if(index)
+		loadClassIndex(index, index.getAttribute("data-shards").split(" "));
+});
@@ -0,0 +1,68 @@
+// Search over search-index.js. Runs as a Web Worker, or in the page itself if workers are not available.
+
+var searchData = null;
+
+function searchIndex(data) {
+	// only names are decoded upfront, the rest of the line is split when it is shown
+	var lines = data.entries.split("\n");
+	var names = new Array(lines.length);
+	var keys = new Array(lines.length);
+	var prev = "";
+	for(var i=0; i<lines.length; i++) {
+		var line = lines[i];
+		var s1 = line.indexOf("|");
+		var s2 = line.indexOf("|", s1+1);
+		prev = prev.substring(0, parseInt(line.substring(0, s1))) + line.substring(s1+1, s2);
+		names[i] = prev;
+		keys[i] = prev.toLowerCase();
+	}
+	var classes = new Array(data.classes.length);
+	for(var i=0; i<classes.length; i++)
+		classes[i] = data.classes[i].split("|");
+	searchData = { packages: data.packages, classes: classes, names: names, keys: keys, lines: lines };
+}
+
+function searchResult(i) {
+	var f = searchData.lines[i].split("|");
+	var name = searchData.names[i];
+	var kind = f[2];
+	var owner = parseInt(f[3]);
+	if(kind=="p")
+		return { kind: kind, label: name, info: "package", path: name.replace(/\./g, "/")+"/package-summary.html" };
+	var cls = searchData.classes[owner];
+	var pkg = searchData.packages[parseInt(cls[0])];
+	var path = pkg.replace(/\./g, "/")+"/"+cls[1]+".html";
+	if(f.length<5)
+		return { kind: kind, label: cls[1], info: pkg, path: path };
+	var anchor = f[4].charAt(0)=="#" ? f[4].substring(1) : name+f[4];
+	return { kind: kind, label: name+(f.length>5 ? f[5] : ""), info: pkg+"."+cls[1], path: anchor ? path+"#"+anchor : path };
+}
+
+function searchFind(query, limit) {
+	var q = query.trim().toLowerCase();
+	var res = [];
+	if(searchData==null || q.length==0)
+		return res;
+	// first name with the query as prefix
+	var keys = searchData.keys;
+	var lo = 0;
+	var hi = keys.length;
+	while(lo<hi) {
+		var mid = (lo+hi)>>1;
+		if(keys[mid]<q)
+			lo = mid+1;
+		else
+			hi = mid;
+	}
+	for(var i=lo; i<keys.length && res.length<limit && keys[i].startsWith(q); i++)
+		res.push(searchResult(i));
+	return res;
+}
+
+if(typeof document==="undefined") {
+	onmessage = function(e) {
+		if(searchData==null)
+			importScripts("search-index.js");
+		postMessage({ id: e.data.id, results: searchFind(e.data.query, e.data.limit) });
+	};
+}